@@ -1,205 +1,364 @@
-/*
- * Copyright (C) 2024 Nameless Production Committee
- *
- * Licensed under the MIT License (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *          http://opensource.org/licenses/mit-license.php
- */
-package belldandy;
-
-import java.time.YearMonth;
-import java.time.ZonedDateTime;
-import java.time.temporal.ChronoField;
-import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.TreeSet;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-/**
- * Represents a single field in a cron expression.
- */
-class Cron {
-    private static final Pattern FORMAT = Pattern
-            .compile("(?:(?:(\\*)|(\\?|L|LW)) | ([0-9]{1,2}|[a-z]{3,3})(?:(L|W) | -([0-9]{1,2}|[a-z]{3,3}))?)(?:(/|\\#)([0-9]{1,7}))?", Pattern.CASE_INSENSITIVE | Pattern.COMMENTS);
-
-    private ChronoField field;
-
-    /**
-     * [0] - start
-     * [1] - end
-     * [2] - increment
-     * [3] - modifier
-     * [4] - modifierForIncrement
-     */
-    private List<int[]> parts = new ArrayList();
-
-    /**
-     * Constructs a new Field instance based on the given type and expression.
-     *
-     * @param expr The expression string for this field.
-     * @throws IllegalArgumentException if the expression is invalid.
-     */
-    Cron(ChronoField field, int min, int max, String names, String modifier, String increment, String expr) {
-        this.field = field;
-
-        for (String range : expr.split(",")) {
-            Matcher m = FORMAT.matcher(range);
-            if (!m.matches()) {
-                throw new IllegalArgumentException(range);
-            }
-
-            String start = m.group(3);
-            String mod = m.group(4);
-            String end = m.group(5);
-            String inc = m.group(7);
-
-            int[] part = {-1, -1, 1, 0, 0};
-            if (start != null) {
-                part[0] = part[1] = map(start, names);
-                part[3] = mod == null ? 0 : mod.charAt(0);
-                if (end != null) {
-                    part[1] = map(end, names);
-                } else if (inc != null) {
-                    part[1] = max;
-                }
-            }
-
-            // astarisk
-            if (m.group(1) != null) {
-                part[0] = min;
-                part[1] = max;
-            }
-            if (m.group(2) != null) {
-                mod = m.group(2);
-                part[3] = mod.charAt(mod.length() - 1);
-            }
-            if (inc != null) {
-                part[4] = m.group(6).charAt(0);
-                part[2] = Integer.parseInt(inc);
-            }
-
-            // validate parts
-            // @formatter:off
-            if ((part[0] != -1 && part[0] < min) || max < part[1] || part[0] > part[1] || (part[3] != 0 && modifier.indexOf(part[3]) == -1) || part[4] != 0 && increment.indexOf(part[4]) == -1) {
-                throw new IllegalArgumentException(range);
-            }
-            // @formatter:on
-            parts.add(part);
-        }
-    }
-
-    /**
-     * Maps a string representation to its corresponding numeric value for this field.
-     *
-     * @param name The string representation to map.
-     * @return The corresponding numeric value.
-     */
-    private int map(String name, String names) {
-        int index = names.indexOf(name.toUpperCase().concat(" "));
-        if (index != -1) {
-            // The minimum value of the field needs to be added, but since this function is only
-            // used for Month and DayOfWeek, there is no problem with always using the constant
-            // value 1 instead of field.range().getMinimum().
-            return index / 4 + 1;
-        }
-        int value = Integer.parseInt(name);
-        return value == 0 && field == ChronoField.DAY_OF_WEEK ? 7 : value;
-    }
-
-    /**
-     * Checks if the given date matches this field's constraints.
-     *
-     * @param date The LocalDate to check.
-     * @return true if the date matches, false otherwise.
-     */
-    boolean matches(ZonedDateTime date) {
-        int day = date.getDayOfMonth();
-        int dow = date.getDayOfWeek().getValue();
-        int last = YearMonth.of(date.getYear(), date.getMonth()).lengthOfMonth();
-
-        for (int[] part : parts) {
-            if (part[3] == 'L') {
-                if (field == ChronoField.DAY_OF_WEEK) {
-                    if (dow == part[0] && day > (last - 7)) {
-                        return true;
-                    }
-                } else {
-                    if (day == last - (part[0] == -1 ? 0 : part[0])) {
-                        return true;
-                    }
-                }
-            } else if (part[3] == 'W') {
-                if (dow <= 5) {
-                    int target = part[0] == -1 ? last : part[0];
-
-                    if (day == target) {
-                        return true;
-                    } else if (dow == 5 && (target == day + 1 || (target == last && last - 2 <= day))) {
-                        return true;
-                    } else if (dow == 1 && (target == day - 1 || (target == 1 && day <= 3))) {
-                        return true;
-                    }
-                }
-            } else if (part[4] == '#') {
-                if (dow == part[0] && part[2] == (day % 7 == 0 ? day / 7 : day / 7 + 1)) {
-                    return true;
-                }
-            } else {
-                int value = date.get(field);
-                if (part[3] == '?' || (part[0] <= value && value <= part[1] && (value - part[0]) % part[2] == 0)) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Finds the next matching value for this field.
-     *
-     * @param date Array containing a single ZonedDateTime to be updated.
-     * @return true if a match was found, false if the field overflowed.
-     */
-    boolean matches(ZonedDateTime[] date) {
-        int value = date[0].get(field);
-        TreeSet<ZonedDateTime> set = new TreeSet();
-
-        for (int[] part : parts) {
-            int next = part[0] <= value ? value : part[0];
-            int rem = (next - part[0]) % part[2];
-            if (rem != 0) next += part[2] - rem;
-
-            if (next <= part[1]) {
-                ZonedDateTime target = date[0];
-                if (next != value) {
-                    if (field == ChronoField.MONTH_OF_YEAR) {
-                        target = target.with(field, next).withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS);
-                    } else {
-                        target = target.with(field, next).truncatedTo(field.getBaseUnit());
-                    }
-                }
-                set.add(target);
-                continue;
-            }
-        }
-
-        if (!set.isEmpty()) {
-            date[0] = set.first();
-            return true;
-        }
-
-        if (field == ChronoField.MONTH_OF_YEAR) {
-            date[0] = date[0].plus(1, field.getRangeUnit()).withMonth(1).withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS);
-        } else {
-            // The field must be set to the minimum value, but this method is only used for Second,
-            // Minute, Hour, and Month, and since Month is handled in the above branch, there is no
-            // problem with always using the constant value 0 instead of field.range().getMinimum().
-            date[0] = date[0].plus(1, field.getRangeUnit()).with(field, 0).truncatedTo(field.getBaseUnit());
-        }
-        return false;
-    }
-}
\ No newline at end of file
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+import java.time.temporal.ChronoField;
+import java.util.Arrays;
+
+/**
+ * Represents a single field in a cron expression.
+ */
+class Cron {
+
+    private ChronoField field;
+
+    /**
+     * The bitmask of the values which are matched by the plain ranges and steps. The bit at the
+     * position of value is set. Since the maximum value of all fields is less than 64, every field
+     * fits in one long.
+     */
+    private long mask;
+
+    /**
+     * The parts which have the special modifier (L, W or #) and can't be compiled into the mask.
+     * <p>
+     * [0] - start
+     * [1] - end
+     * [2] - increment
+     * [3] - modifier
+     * [4] - modifierForIncrement
+     * </p>
+     */
+    private int[][] parts = {};
+
+    /**
+     * The flag whether this field matches every value in its range without any modifier. It is
+     * computed once at compile time, and the expression whose day related fields are all
+     * unrestricted is searched by the time of day only.
+     */
+    final boolean every;
+
+    /**
+     * The bitmasks of the matched days (the bit at day - 1 is set) for every shape of month. The
+     * matching of day related fields depends only on the length of month and the day of week of
+     * the first day, so the 28 combinations are computed once at compile time and the day search
+     * becomes one bit scan per month. This is null for the fields other than Day of Month and Day
+     * of Week.
+     */
+    private final int[] days;
+
+    /**
+     * Constructs a new Field instance based on the given type and expression.
+     *
+     * @param expr The expression string for this field.
+     * @throws IllegalArgumentException if the expression is invalid.
+     */
+    Cron(ChronoField field, int min, int max, String names, String modifier, String increment, String expr) {
+        this(field, min, max, names, modifier, increment, expr, 0, expr.length());
+    }
+
+    /**
+     * Constructs a new Field instance based on the given type and the region of expression.
+     * <p>
+     * The comma separated ranges are scanned in a single pass without any regular expression. Each
+     * range has the following syntax (letters are case-insensitive).
+     * </p>
+     * <pre>
+     * range := ('*' | '?' | 'L' | 'LW' | value ('L' | 'W' | '-' value)?) (('/' | '#') [0-9]{1,7})?
+     * value := [0-9]{1,2} | [a-z]{3}
+     * </pre>
+     *
+     * @param expr The expression string which contains this field.
+     * @param from The start index of this field. (inclusive)
+     * @param to The end index of this field. (exclusive)
+     * @throws IllegalArgumentException if the expression is invalid.
+     */
+    Cron(ChronoField field, int min, int max, String names, String modifier, String increment, String expr, int from, int to) {
+        this.field = field;
+
+        // the trailing empty ranges are ignored as same as String#split
+        int limit = to;
+        while (from < to && expr.charAt(to - 1) == ',') {
+            to--;
+        }
+
+        for (int start = from; start < to;) {
+            int end = expr.indexOf(',', start);
+            if (end == -1 || to < end) end = to;
+
+            int[] part = {-1, -1, 1, 0, 0};
+            boolean single = false;
+            int i = start;
+            char c = i < end ? expr.charAt(i) : 0;
+
+            if (c == '*') {
+                // astarisk
+                part[0] = min;
+                part[1] = max;
+                i++;
+            } else if (c == '?') {
+                part[3] = c;
+                i++;
+            } else if ((c == 'L' || c == 'l') && letters(expr, i, end) < 3) {
+                part[3] = c;
+                if (++i < end && letter(expr.charAt(i))) {
+                    part[3] = expr.charAt(i++);
+                    if (part[3] != 'W' && part[3] != 'w') throw error(expr, start, end);
+                }
+            } else {
+                i = value(expr, i, end, names, part, 0, start);
+                part[1] = part[0];
+                single = true;
+
+                c = i < end ? expr.charAt(i) : 0;
+                if (c == 'L' || c == 'l' || c == 'W' || c == 'w') {
+                    part[3] = c;
+                    i++;
+                } else if (c == '-') {
+                    i = value(expr, i + 1, end, names, part, 1, start);
+                    single = false;
+                }
+            }
+
+            if (i < end) {
+                c = expr.charAt(i++);
+                int digits = 0;
+                int inc = 0;
+                while (i < end && '0' <= expr.charAt(i) && expr.charAt(i) <= '9') {
+                    inc = inc * 10 + expr.charAt(i++) - '0';
+                    digits++;
+                }
+                if ((c != '/' && c != '#') || digits == 0 || 7 < digits || i != end) {
+                    throw error(expr, start, end);
+                }
+                part[2] = inc;
+                part[4] = c;
+
+                if (single) part[1] = max;
+            }
+
+            // validate parts
+            // @formatter:off
+            if ((part[0] != -1 && part[0] < min) || max < part[1] || part[0] > part[1] || part[2] <= 0 || (part[3] != 0 && modifier.indexOf(part[3]) == -1) || part[4] != 0 && increment.indexOf(part[4]) == -1) {
+                throw error(expr, start, end);
+            }
+            // @formatter:on
+
+            if (part[3] == 'L' || part[3] == 'W' || part[4] == '#') {
+                parts = Arrays.copyOf(parts, parts.length + 1);
+                parts[parts.length - 1] = part;
+            } else if (part[3] == '?') {
+                mask |= -1L >>> 63 - max & -1L << min;
+            } else {
+                for (int value = part[0]; value <= part[1]; value += part[2]) {
+                    mask |= 1L << value;
+                }
+            }
+            start = end + 1;
+        }
+
+        // the field which consists of only the empty ranges can never be matched
+        if (mask == 0 && parts.length == 0) {
+            throw error(expr, from, limit);
+        }
+        every = parts.length == 0 && mask == (-1L >>> 63 - max & -1L << min);
+
+        if (field == ChronoField.DAY_OF_MONTH || field == ChronoField.DAY_OF_WEEK) {
+            days = new int[28];
+            for (int last = 28; last <= 31; last++) {
+                for (int first = 1; first <= 7; first++) {
+                    int matched = 0;
+                    for (int day = 1; day <= last; day++) {
+                        if (matches(day, (first + day - 2) % 7 + 1, last)) {
+                            matched |= 1 << day - 1;
+                        }
+                    }
+                    days[(last - 28) * 7 + first - 1] = matched;
+                }
+            }
+        } else {
+            days = null;
+        }
+    }
+
+    /**
+     * Scans the single value (1 or 2 digits, or 3 letters name) and stores it into the part.
+     *
+     * @param expr The expression.
+     * @param i The current index.
+     * @param end The end index of the current range.
+     * @param names The list of names for this field.
+     * @param part The parsed part.
+     * @param index The index of part to store the value.
+     * @param start The start index of the current range.
+     * @return The next index.
+     */
+    private int value(String expr, int i, int end, String names, int[] part, int index, int start) {
+        int count = letters(expr, i, end);
+        if (count >= 3) {
+            // The minimum value of the field needs to be added, but since names are only used for
+            // Month and DayOfWeek, there is no problem with always using the constant value 1
+            // instead of field.range().getMinimum().
+            for (int n = 0; n < names.length(); n += 4) {
+                if (same(names.charAt(n), expr.charAt(i)) && same(names.charAt(n + 1), expr.charAt(i + 1)) && same(names
+                        .charAt(n + 2), expr.charAt(i + 2))) {
+                    part[index] = n / 4 + 1;
+                    return i + 3;
+                }
+            }
+            throw error(expr, start, end);
+        }
+
+        int value = 0;
+        int digits = 0;
+        while (i < end && digits < 3 && '0' <= expr.charAt(i) && expr.charAt(i) <= '9') {
+            value = value * 10 + expr.charAt(i++) - '0';
+            digits++;
+        }
+        if (digits == 0 || 2 < digits) {
+            throw error(expr, start, end);
+        }
+        part[index] = value == 0 && field == ChronoField.DAY_OF_WEEK ? 7 : value;
+        return i;
+    }
+
+    /**
+     * Counts the consecutive ASCII letters.
+     * 
+     * @param expr The expression.
+     * @param i The start index.
+     * @param end The end index.
+     * @return The number of letters.
+     */
+    private static int letters(String expr, int i, int end) {
+        int count = 0;
+        while (i < end && letter(expr.charAt(i++))) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether the character is ASCII letter.
+     * 
+     * @param c The character to check.
+     * @return true if it is ASCII letter.
+     */
+    private static boolean letter(char c) {
+        return ('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z');
+    }
+
+    /**
+     * Compares the upper case name with the case-insensitive ASCII letter.
+     * 
+     * @param name The upper case letter.
+     * @param c The letter to compare.
+     * @return true if they are same.
+     */
+    private static boolean same(char name, char c) {
+        return name == (c & ~0x20);
+    }
+
+    /**
+     * Builds the error which reports the invalid range.
+     * 
+     * @param expr The expression.
+     * @param start The start index of the invalid range.
+     * @param end The end index of the invalid range.
+     * @return The error.
+     */
+    private static IllegalArgumentException error(String expr, int start, int end) {
+        return new IllegalArgumentException(expr.substring(start, end));
+    }
+
+    /**
+     * Checks if the given day matches this field's constraints. This method is only used for Day
+     * of Month and Day of Week.
+     *
+     * @param day The day of month.
+     * @param dow The day of week. (1 is Monday)
+     * @param last The length of month.
+     * @return true if the day matches, false otherwise.
+     */
+    private boolean matches(int day, int dow, int last) {
+        if ((mask & 1L << (field == ChronoField.DAY_OF_WEEK ? dow : day)) != 0) {
+            return true;
+        }
+
+        for (int[] part : parts) {
+            if (part[3] == 'L') {
+                if (field == ChronoField.DAY_OF_WEEK) {
+                    if (dow == part[0] && day > (last - 7)) {
+                        return true;
+                    }
+                } else {
+                    if (day == last - (part[0] == -1 ? 0 : part[0])) {
+                        return true;
+                    }
+                }
+            } else if (part[3] == 'W') {
+                if (dow <= 5) {
+                    int target = part[0] == -1 ? last : part[0];
+
+                    if (day == target) {
+                        return true;
+                    } else if (dow == 5 && (target == day + 1 || (target == last && last - 2 <= day))) {
+                        return true;
+                    } else if (dow == 1 && (target == day - 1 || (target == 1 && day <= 3))) {
+                        return true;
+                    }
+                }
+            } else if (part[4] == '#') {
+                if (dow == part[0] && part[2] == (day % 7 == 0 ? day / 7 : day / 7 + 1)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the matched days of the month. This method is only used for Day of Month and Day of
+     * Week.
+     *
+     * @param last The length of month.
+     * @param first The day of week of the first day. (1 is Monday)
+     * @return The bitmask of the matched days, the bit at day - 1 is set.
+     */
+    int days(int last, int first) {
+        return days[(last - 28) * 7 + first - 1];
+    }
+
+    /**
+     * Finds the next matching value for this field. This method is only used for Second, Minute,
+     * Hour and Month.
+     *
+     * @param value The current value.
+     * @return The lowest matching value which is equal to or greater than the given value, or -1
+     *         if the field overflowed.
+     */
+    int next(int value) {
+        long candidates = mask & -1L << value;
+        return candidates == 0 ? -1 : Long.numberOfTrailingZeros(candidates);
+    }
+
+    /**
+     * Finds the previous matching value for this field. This method is only used for Second,
+     * Minute, Hour and Month.
+     *
+     * @param value The current value.
+     * @return The highest matching value which is equal to or less than the given value, or -1 if
+     *         the field underflowed.
+     */
+    int previous(int value) {
+        long candidates = mask & -1L >>> 63 - value;
+        return candidates == 0 ? -1 : 63 - Long.numberOfLeadingZeros(candidates);
+    }
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The compiled cron expression. It is immutable and thread-safe, so the same instance can be shared
+ * by any number of tasks and threads.
+ * <p>
+ * {@link #of(String)} canonicalizes the expression by its normalized text (the whitespaces are
+ * collapsed and the omitted second field is filled), so the tasks which share the same schedule
+ * also share the same parsed fields.
+ * </p>
+ * <p>
+ * {@link #of(String, String)} accepts the hashed "H" syntax which spreads the tasks on the same
+ * schedule. Each "H" is resolved to the stable value derived from the key before the
+ * canonicalization, so the tasks which happen to be resolved to the same schedule are still
+ * canonicalized into the same instance.
+ * </p>
+ */
+public final class CronExpression {
+
+    /** The maximum number of cached expressions. */
+    static final int CACHE_SIZE = 1024;
+
+    /** The canonicalizing cache. */
+    static final ConcurrentHashMap<String, CronExpression> CACHE = new ConcurrentHashMap();
+
+    /** The lower bound of each field for "H". */
+    private static final int[] MIN = {0, 0, 0, 1, 1, 1};
+
+    /** The upper bound of each field for "H". */
+    private static final int[] MAX = {59, 59, 23, 28, 12, 7};
+
+    /** The normalized expression. */
+    private final String expression;
+
+    /** The parsed fields. */
+    final Cron[] fields;
+
+    /**
+     * Compile the expression.
+     *
+     * @param expression The normalized expression.
+     * @param fields The parsed fields.
+     */
+    private CronExpression(String expression, Cron[] fields) {
+        this.expression = expression;
+        this.fields = fields;
+    }
+
+    /**
+     * Returns the compiled cron expression. The same instance is returned for the expressions which
+     * have the same normalized text as long as it remains in the cache.
+     *
+     * @param expression A cron expression with 5 or 6 fields.
+     * @return The compiled expression.
+     * @throws IllegalArgumentException If the expression is invalid.
+     */
+    public static CronExpression of(String expression) {
+        String key = normalize(expression);
+
+        CronExpression cron = CACHE.get(key);
+        if (cron == null) {
+            cron = new CronExpression(key, Scheduler.parse(expression));
+
+            if (CACHE_SIZE <= CACHE.size()) {
+                // evict the arbitrary entry, the evicted expression is still valid but it is no
+                // longer canonical
+                Iterator<String> keys = CACHE.keySet().iterator();
+                if (keys.hasNext()) {
+                    keys.next();
+                    keys.remove();
+                }
+            }
+
+            CronExpression previous = CACHE.putIfAbsent(key, cron);
+            if (previous != null) {
+                cron = previous;
+            }
+        }
+        return cron;
+    }
+
+    /**
+     * Returns the compiled cron expression which may contain the hashed "H" syntax. Each "H" is
+     * resolved to the stable value derived from the key, so the tasks which use the different keys
+     * are spread evenly across the allowed range, and the schedule of each task never changes
+     * between runs.
+     * <pre>
+     * H          - the single value in the whole range of field
+     * H(a-b)     - the single value in the range from a to b
+     * H/n        - every n values starting from the hashed value less than n
+     * H(a-b)/n   - every n values in the range from a to b
+     * </pre>
+     * The whole range of Day of Month is 1-28 for "H", so the resolved day exists in every month.
+     *
+     * @param expression A cron expression with 5 or 6 fields.
+     * @param key The key to derive the values of "H", such as the name of task.
+     * @return The compiled expression.
+     * @throws IllegalArgumentException If the expression is invalid.
+     */
+    public static CronExpression of(String expression, String key) {
+        String normalized = normalize(expression);
+        if (normalized.indexOf('H') == -1 && normalized.indexOf('h') == -1) {
+            return of(normalized);
+        }
+
+        String[] fields = normalized.split(" ");
+        if (fields.length != 6) {
+            throw new IllegalArgumentException(expression);
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i != 0) builder.append(' ');
+
+            String field = fields[i];
+            for (int start = 0, nth = 0; start <= field.length(); nth++) {
+                int end = field.indexOf(',', start);
+                if (end == -1) end = field.length();
+                if (start != 0) builder.append(',');
+
+                char c = start < end ? field.charAt(start) : 0;
+                if (c == 'H' || c == 'h') {
+                    hash(builder, field.substring(start, end), MIN[i], MAX[i], mix(key.hashCode() + i * 31 + nth));
+                } else {
+                    builder.append(field, start, end);
+                }
+                start = end + 1;
+            }
+        }
+        return of(builder.toString());
+    }
+
+    /**
+     * Resolve the hashed range into the plain range.
+     *
+     * @param builder The output.
+     * @param range The hashed range which starts with "H".
+     * @param min The lower bound of field.
+     * @param max The upper bound of field.
+     * @param hash The hash value.
+     */
+    private static void hash(StringBuilder builder, String range, int min, int max, long hash) {
+        int i = 1;
+        int length = range.length();
+        if (i < length && range.charAt(i) == '(') {
+            int dash = range.indexOf('-', i);
+            int close = range.indexOf(')', i);
+            if (dash == -1 || close < dash) {
+                throw new IllegalArgumentException(range);
+            }
+            min = number(range, i + 1, dash);
+            max = number(range, dash + 1, close);
+            i = close + 1;
+        }
+
+        if (max < min) {
+            throw new IllegalArgumentException(range);
+        }
+
+        if (i == length) {
+            builder.append(min + Math.floorMod(hash, max - min + 1));
+        } else if (range.charAt(i) == '/') {
+            int step = number(range, i + 1, length);
+            if (step == 0) {
+                throw new IllegalArgumentException(range);
+            }
+            builder.append(min + Math.floorMod(hash, Math.min(step, max - min + 1))).append('-').append(max).append('/').append(step);
+        } else {
+            throw new IllegalArgumentException(range);
+        }
+    }
+
+    /**
+     * Parse the decimal number.
+     *
+     * @param text The text.
+     * @param start The start index. (inclusive)
+     * @param end The end index. (exclusive)
+     * @return The parsed number.
+     */
+    private static int number(String text, int start, int end) {
+        if (start == end || 7 < end - start) {
+            throw new IllegalArgumentException(text);
+        }
+
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || '9' < c) {
+                throw new IllegalArgumentException(text);
+            }
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+
+    /**
+     * Mix the bits of seed. (the finalizer of SplitMix64)
+     *
+     * @param seed The seed.
+     * @return The mixed value.
+     */
+    private static long mix(long seed) {
+        seed = (seed ^ (seed >>> 30)) * 0xBF58476D1CE4E5B9L;
+        seed = (seed ^ (seed >>> 27)) * 0x94D049BB133111EBL;
+        return seed ^ (seed >>> 31);
+    }
+
+    /**
+     * Normalize the expression text. The whitespaces are collapsed into the single space, and the
+     * second field is filled if it is omitted.
+     *
+     * @param expression The expression to normalize.
+     * @return The normalized text.
+     */
+    private static String normalize(String expression) {
+        StringBuilder builder = new StringBuilder(expression.length() + 2);
+        int count = 0;
+        for (int i = 0, length = expression.length(); i < length;) {
+            if (Character.isWhitespace(expression.charAt(i))) {
+                i++;
+            } else {
+                if (count++ != 0) builder.append(' ');
+                while (i < length && !Character.isWhitespace(expression.charAt(i))) {
+                    builder.append(expression.charAt(i++));
+                }
+            }
+        }
+        return count == 5 ? builder.insert(0, "0 ").toString() : builder.toString();
+    }
+
+    /**
+     * Calculates the next execution time after the base time.
+     *
+     * @param base The base time to start the search from.
+     * @return The next execution time in the time zone of the base time.
+     * @throws IllegalArgumentException If no matching execution time is found within four years.
+     */
+    public ZonedDateTime next(ZonedDateTime base) {
+        return Scheduler.next(fields, base);
+    }
+
+    /**
+     * Calculates the previous execution time before the base time. It is the latest time which
+     * {@link #next(ZonedDateTime)} can return before the base time, so it answers when the task
+     * should have been executed last.
+     *
+     * @param base The base time to start the search from.
+     * @return The previous execution time in the time zone of the base time.
+     * @throws IllegalArgumentException If no matching execution time is found within four years.
+     */
+    public ZonedDateTime previous(ZonedDateTime base) {
+        return Scheduler.previous(fields, base);
+    }
+
+    /**
+     * Returns the lazy stream of the execution times after the base time. The search state is
+     * carried forward between elements, so each element costs only the search from the previous
+     * one. The stream ends if no execution time is found within four years from the previous one.
+     *
+     * @param base The base time to start the search from.
+     * @return The ordered stream of the execution times in the time zone of the base time.
+     */
+    public Stream<ZonedDateTime> stream(ZonedDateTime base) {
+        ZoneId zone = base.getZone();
+        Cursor cursor = new Cursor(base.toEpochSecond(), zone);
+
+        return StreamSupport
+                .longStream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false)
+                .mapToObj(time -> Instant.ofEpochSecond(time).atZone(zone));
+    }
+
+    /**
+     * Computes the next execution times after the base time in bulk.
+     *
+     * @param base The base time to start the search from.
+     * @param n The number of execution times to compute.
+     * @return The execution times (epoch ms). It is shorter than the specified number if no
+     *         execution time is found within four years from the previous one.
+     */
+    public long[] nextN(ZonedDateTime base, int n) {
+        long[] times = new long[n];
+        int count = nextN(base, times);
+        return count == n ? times : Arrays.copyOf(times, count);
+    }
+
+    /**
+     * Computes the next execution times after the base time in bulk, and fills the given array
+     * without any allocation per element.
+     *
+     * @param base The base time to start the search from.
+     * @param times The array to store the execution times (epoch ms).
+     * @return The number of stored execution times. It is less than the length of array if no
+     *         execution time is found within four years from the previous one.
+     */
+    public int nextN(ZonedDateTime base, long[] times) {
+        Cursor cursor = new Cursor(base.toEpochSecond(), base.getZone());
+        for (int i = 0; i < times.length; i++) {
+            if (!cursor.hasNext()) {
+                return i;
+            }
+            times[i] = cursor.nextLong() * 1000;
+        }
+        return times.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return expression.hashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof CronExpression other && expression.equals(other.expression);
+    }
+
+    /**
+     * Returns the normalized expression.
+     *
+     * @return The normalized expression.
+     */
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    /**
+     * The search state of the execution times. It carries the matched local time forward, so the
+     * search restarts from the previous match instead of the instant of base time.
+     */
+    private final class Cursor implements PrimitiveIterator.OfLong {
+
+        /** The cached transitions of the time zone. */
+        private final ZoneTable table;
+
+        /** The local time to start the next search from. (local epoch seconds) */
+        private long local;
+
+        /** The previous execution time. (epoch seconds) */
+        private long last;
+
+        /** The prefetched execution time, or {@link Long#MIN_VALUE} if it is not computed yet. */
+        private long next = Long.MIN_VALUE;
+
+        /** The flag whether the search is exhausted. */
+        private boolean exhausted;
+
+        /**
+         * Create new cursor.
+         *
+         * @param base The base time. (epoch seconds)
+         * @param zone The time zone.
+         */
+        private Cursor(long base, ZoneId zone) {
+            this.table = ZoneTable.of(zone);
+            this.local = base + table.offset(base) + 1;
+            this.last = base;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean hasNext() {
+            if (next == Long.MIN_VALUE && !exhausted) {
+                try {
+                    while (true) {
+                        local = Scheduler.next(fields, local);
+                        long time = table.resolve(local);
+                        local++;
+
+                        // the local times in the gap are resolved to the same instant
+                        if (last < time) {
+                            next = last = time;
+                            break;
+                        }
+                    }
+                } catch (IllegalArgumentException e) {
+                    exhausted = true;
+                }
+            }
+            return !exhausted;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            long time = next;
+            next = Long.MIN_VALUE;
+            return time;
+        }
+    }
+}
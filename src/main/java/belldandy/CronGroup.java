@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+import java.time.ZoneId;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The group of cron tasks which share the same expression and time zone. Only the trigger task of
+ * group is put into the task queue, it computes the next time once and submits all members at that
+ * time. The submitted members go through {@link Scheduler#executeTask(Task)}, so they are admitted
+ * by the concurrency limit as same as the other tasks.
+ * <p>
+ * The member which is still waiting or running since the previous time is skipped, so the slow
+ * member never runs concurrently with itself unless its {@link Overlap} policy allows it. If the
+ * trigger has fallen behind, the missed times are handled by the {@link Misfire} policy of the
+ * group. The cancelled member is removed from the group immediately and the failed member is removed
+ * at the next time, and the group which has no member is removed from the scheduler with its
+ * trigger.
+ * </p>
+ * <p>
+ * The trigger is fired on the dispatcher thread without any permit or thread of its own, so it is
+ * invisible from the concurrency limit, the metrics and the events.
+ * </p>
+ */
+class CronGroup implements Callable {
+
+    /** The owner scheduler. */
+    private final Scheduler scheduler;
+
+    /** The grouping key. */
+    final Key key;
+
+    /** The members of this group. */
+    final ConcurrentLinkedQueue<Task> members = new ConcurrentLinkedQueue();
+
+    /** The trigger task which is put into the task queue. */
+    final Task trigger;
+
+    /** The next time which is not triggered yet. (epoch ms) */
+    volatile long next;
+
+    /**
+     * Create new group.
+     *
+     * @param scheduler The owner scheduler.
+     * @param key The grouping key.
+     */
+    CronGroup(Scheduler scheduler, Key key) {
+        this.scheduler = scheduler;
+        this.key = key;
+        this.next = time(System.currentTimeMillis());
+        this.trigger = new Task(this, next, old -> next);
+        this.trigger.triggering = this;
+    }
+
+    /**
+     * Create new member. The member is created on the scheduling thread, so its thread is prepared
+     * here to inherit the context of the scheduling thread instead of the trigger.
+     *
+     * @param task The task to execute.
+     * @param overlap The policy for the overlapped executions of the member.
+     * @return The member task.
+     */
+    Task join(Callable task, Overlap overlap) {
+        Task member = new Task(task, next, old -> next);
+        member.group = this;
+        member.overlap(overlap);
+        scheduler.prepare(member);
+        members.add(member);
+        return member;
+    }
+
+    /**
+     * Compute the next time of the expression.
+     *
+     * @param now The base time. (epoch ms)
+     * @return The next time. (epoch ms)
+     */
+    private long time(long now) {
+        return Scheduler.next(key.cron.fields, Math.floorDiv(now, 1000), key.zone) * 1000;
+    }
+
+    /**
+     * Submit all members which are waiting for this time.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Object call() {
+        long fire = trigger.next;
+        long now = System.currentTimeMillis();
+
+        // The next time is computed only once for all members.
+        long following = time(fire);
+
+        // count the due times except the latest one if this group has fallen behind
+        long count = 0;
+        if (key.misfire != Misfire.FIRE_ALL) {
+            while (following <= now) {
+                fire = following;
+                following = time(fire);
+                count++;
+            }
+        }
+        next = following;
+
+        boolean skip = count != 0 && key.misfire == Misfire.SKIP;
+        if (skip) count++;
+
+        for (Iterator<Task> iterator = members.iterator(); iterator.hasNext();) {
+            Task member = iterator.next();
+            if (member.isDone()) {
+                iterator.remove();
+            } else if (member.next > fire) {
+                // joined after this time
+            } else if (skip || member.pending) {
+                scheduler.skipped.add(skip ? count : count + 1);
+            } else {
+                if (count != 0) scheduler.skipped.add(count);
+                member.pending = true;
+                member.next = fire;
+                try {
+                    scheduler.executeTask(member);
+                } catch (RejectedExecutionException e) {
+                    member.pending = false;
+                    break;
+                }
+            }
+        }
+
+        if (members.isEmpty()) retire();
+        return null;
+    }
+
+    /**
+     * Remove the cancelled member, and retire this group if it has no member.
+     *
+     * @param member The cancelled member.
+     */
+    void leave(Task member) {
+        if (members.remove(member) && members.isEmpty()) retire();
+    }
+
+    /**
+     * Remove this group which has no member from the scheduler, and cancel its trigger.
+     */
+    private void retire() {
+        scheduler.groups.computeIfPresent(key, (k, group) -> {
+            if (group == this && members.isEmpty()) {
+                trigger.cancel(false);
+                return null;
+            }
+            return group;
+        });
+    }
+
+    /**
+     * Collect the members which are waiting for the next time.
+     *
+     * @param remains The list to store the waiting members.
+     */
+    void waiting(List<Runnable> remains) {
+        for (Task member : members) {
+            if (!member.isDone() && !member.pending) {
+                remains.add(member);
+            }
+        }
+    }
+
+    /**
+     * The grouping key.
+     */
+    static record Key(CronExpression cron, ZoneId zone, Misfire misfire) {
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The shard of {@link Scheduler} which owns its own task queue and dispatcher thread. All shards of
+ * the same scheduler share the running task manager and the concurrency limit.
+ * <p>
+ * The submitted tasks are put into the lock-free intake ring at first, and the dispatcher thread
+ * drains them in bulk into its private ordered queue. So the producers never block on the lock of
+ * the ordered queue, and never contend with the dispatcher thread. The cancellation and the change
+ * of trigger time are also notified through the another ring, and the dispatcher thread removes or
+ * reorders the task in its queue.
+ * </p>
+ * <p>
+ * When many tasks expire at the same time, the dispatcher thread retrieves all of them in one pass
+ * with one permit for each of them, and starts them together after releasing the lock.
+ * </p>
+ * <p>
+ * If the scheduler does not remove the cancelled task immediately, the cancellation is only
+ * counted as a tombstone. When the tombstones reach a quarter of the queue, all cancelled tasks are
+ * purged at once, so the memory usage tracks the live tasks rather than every task ever created.
+ * </p>
+ */
+class Dispatcher implements Runnable {
+
+    /** The capacity of intake ring. */
+    private static final int CAPACITY = 8192;
+
+    /** The owner scheduler. */
+    final Scheduler scheduler;
+
+    /** The ordered task queue, which is accessed only by the owner of the lock. */
+    private final TaskQueue queue;
+
+    /** The lock-free intake of the submitted tasks. */
+    private final TaskRing intake = new TaskRing(CAPACITY);
+
+    /** The maximum number of tasks which are dispatched in one pass. */
+    private static final int BATCH = 256;
+
+    /** The minimum number of cancelled tasks in the queue to trigger the compaction. */
+    private static final int COMPACTION = 1024;
+
+    /** The lock-free intake of the cancelled or rescheduled tasks. */
+    private final TaskRing signals = new TaskRing(CAPACITY >> 3);
+
+    /**
+     * The lock of the ordered task queue. It is never acquired by producers, and is almost always
+     * uncontended because only the management operations (e.g. shutdown) acquire it besides the
+     * dispatcher thread.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The number of cancelled tasks which may remain in the queue. It is counted only if the
+     * cancelled task is not removed immediately.
+     */
+    private final AtomicInteger tombstones = new AtomicInteger();
+
+    /** The expired tasks which are dispatched in one pass. */
+    private final Task[] batch = new Task[BATCH];
+
+    /** The expired triggers of cron group which are fired in one pass. */
+    private final Task[] triggers = new Task[BATCH];
+
+    /** The dispatcher thread. */
+    volatile Thread thread;
+
+    /** The time when the parking dispatcher thread will wake up. (epoch ms) */
+    private volatile long wakeup = Long.MIN_VALUE;
+
+    /**
+     * Create new shard.
+     * 
+     * @param scheduler The owner scheduler.
+     * @param queue The task queue.
+     */
+    Dispatcher(Scheduler scheduler, TaskQueue queue) {
+        this.scheduler = scheduler;
+        this.queue = queue;
+    }
+
+    /**
+     * Submit the task. This method can be called from any thread and never blocks.
+     * 
+     * @param task A task to submit.
+     */
+    void add(Task task) {
+        task.dispatcher = this;
+        intake.add(task);
+
+        // wake up the dispatcher thread only if the new task is earlier than the scheduled wake-up
+        if (task.next < wakeup) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Notify the change of trigger time. This method can be called from any thread and never
+     * blocks.
+     * 
+     * @param task The rescheduled task.
+     */
+    void update(Task task) {
+        signals.add(task);
+
+        if (task.next < wakeup) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Notify the cancellation of task. This method can be called from any thread and never blocks.
+     * 
+     * @param task The cancelled task.
+     */
+    void cancel(Task task) {
+        if (scheduler.removeOnCancel) {
+            signals.add(task);
+
+            // wake up the parking dispatcher thread to release the cancelled task immediately
+            if (wakeup != Long.MIN_VALUE) {
+                LockSupport.unpark(thread);
+            }
+        } else if ((tombstones.incrementAndGet() & COMPACTION - 1) == 0) {
+            // wake up the dispatcher thread occasionally to check whether the compaction is needed
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Move all submitted tasks from the intake into the ordered queue, and apply all cancellations
+     * and changes. The caller must hold the lock.
+     */
+    private void drain() {
+        Task task;
+        while ((task = intake.poll()) != null) {
+            if (!task.isCancelled()) {
+                queue.add(task);
+            }
+        }
+
+        // The signal of the task which is not in the queue is simply ignored. If the task is still
+        // in the intake, it will be added with its latest trigger time. If the task is already
+        // running, there is nothing to do.
+        //
+        // Removing many tasks one by one costs O(k log n), so the bulk cancellation is processed by
+        // the compaction of the whole queue in O(n) instead.
+        int removable = Math.max(64, queue.size() >> 4);
+        boolean compaction = false;
+        while ((task = signals.poll()) != null) {
+            if (!task.isCancelled()) {
+                queue.update(task);
+            } else if (!compaction) {
+                queue.remove(task);
+                compaction = --removable < 0;
+            }
+        }
+
+        int dead = tombstones.get();
+        if (compaction || (COMPACTION <= dead && queue.size() >> 2 <= dead)) {
+            queue.purge();
+            tombstones.addAndGet(-dead);
+        }
+    }
+
+    /**
+     * Check whether the intake has no task.
+     * 
+     * @return true if the intake is empty.
+     */
+    private boolean isIntakeEmpty() {
+        return intake.isEmpty() && signals.isEmpty();
+    }
+
+    /**
+     * Count the number of waiting tasks.
+     * 
+     * @return The number of waiting tasks.
+     */
+    int size() {
+        lock.lock();
+        try {
+            drain();
+            return queue.size() + intake.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all waiting tasks.
+     * 
+     * @param remains The list to store the removed tasks.
+     */
+    void clear(List<Runnable> remains) {
+        lock.lock();
+        try {
+            drain();
+            for (Task task : queue) {
+                remains.add(task);
+            }
+            queue.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wake up the dispatcher thread.
+     */
+    void wake() {
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        // The number of permits which this thread holds to execute the expired tasks.
+        int permits = 0;
+
+        // The time which this thread has been blocked by the concurrency limit since the last
+        // dispatch, it is measured only for the instrumentation.
+        long waited = 0;
+
+        // The number of the expired triggers of cron group.
+        int fired = 0;
+
+        try {
+            while (true) {
+                int count = 0;
+                long now, next;
+
+                lock.lock();
+                try {
+                    drain();
+                    if (!scheduler.run && queue.size() == 0 && isIntakeEmpty()) {
+                        return;
+                    }
+
+                    // All expired tasks are retrieved in one pass, each with its own permit. The
+                    // permit is acquired only when the expired task exists, and the task is
+                    // retrieved after that. Otherwise, the idle shard would keep the permit that
+                    // the other shard needs, or the task waiting for the permit would be invisible.
+                    now = System.currentTimeMillis();
+                    while (count + fired < BATCH && queue.next() <= now) {
+                        if (permits == 0 && !scheduler.max.tryAcquire()) {
+                            break;
+                        }
+                        permits = 1;
+
+                        // The queue may have no expired task even if the next time is passed, for
+                        // example, the timing wheel only cascades the tasks at that time.
+                        Task task = queue.poll(now);
+                        if (task == null) {
+                            break;
+                        }
+
+                        // The task leaves this dispatcher, so its cancellation no longer signals.
+                        task.dispatcher = null;
+
+                        // The cancelled task may remain in the queue, skip it without the permit.
+                        if (task.isCancelled()) {
+                            // skip
+                        } else if (task.triggering != null) {
+                            // The trigger of cron group is fired without the permit, see #fire(Task).
+                            triggers[fired++] = task;
+                        } else {
+                            permits--;
+                            batch[count++] = task;
+
+                            // Task execution state management is performed before thread execution
+                            // because it is too slow if the task execution state management is
+                            // performed within the task's execution thread.
+                            scheduler.runs.add(task);
+                        }
+                    }
+                    next = queue.next();
+
+                    // The permit which has no expired task is returned before leaving, so this
+                    // shard never holds the permit while the other shards need it.
+                    if (permits != 0) {
+                        scheduler.max.release(permits);
+                        permits = 0;
+                    }
+
+                    Metrics metrics = scheduler.metrics;
+                    if (count != 0 && metrics != null) metrics.onDispatch(count, queue.size());
+                } finally {
+                    lock.unlock();
+                }
+
+                boolean triggered = fired != 0;
+                for (int i = 0; i < fired; i++) {
+                    fire(triggers[i]);
+                    triggers[i] = null;
+                }
+                fired = 0;
+
+                if (count != 0) {
+                    // execute tasks actually
+                    for (int i = 0; i < count; i++) {
+                        batch[i].wait = waited;
+                        scheduler.start(batch[i]);
+                        batch[i] = null;
+                    }
+                    waited = 0;
+                } else if (triggered) {
+                    // check the members which are submitted by the triggers
+                } else if (next <= now) {
+                    if (permits == 0) {
+                        // The direct start of new task yields while this thread is waiting, so the
+                        // expired tasks are never overtaken by the new submissions.
+                        scheduler.waiting.incrementAndGet();
+                        try {
+                            Metrics metrics = scheduler.metrics;
+                            if (metrics == null && !new TaskEvent.Dispatch().isEnabled()) {
+                                scheduler.max.acquire();
+                            } else {
+                                long start = System.nanoTime();
+                                scheduler.max.acquire();
+                                long time = System.nanoTime() - start;
+                                waited += time;
+                                if (metrics != null) metrics.onWait(time);
+                            }
+                        } finally {
+                            scheduler.waiting.decrementAndGet();
+                        }
+                        permits = 1;
+                    }
+                } else {
+                    await(next);
+                }
+            }
+        } catch (InterruptedException e) {
+            // stop
+        } finally {
+            if (permits != 0) {
+                scheduler.max.release(permits);
+            }
+        }
+    }
+
+    /**
+     * Fire the trigger of cron group on this thread. The trigger only computes the next time and
+     * submits its members, so it uses neither the permit nor its own thread, and it is never
+     * observed as the user task.
+     * 
+     * @param trigger The expired trigger.
+     */
+    private void fire(Task trigger) {
+        trigger.run();
+
+        if (scheduler.run && !trigger.isDone()) {
+            trigger.next = trigger.interval.applyAsLong(trigger.next);
+            add(trigger);
+        }
+    }
+
+    /**
+     * Park the dispatcher thread until the specified time or the earlier task is submitted.
+     * 
+     * @param next The time to wake up. (epoch ms)
+     */
+    private void await(long next) {
+        // Publish the wake-up time before checking the intake, so either the producer can see the
+        // new wake-up time or this thread can see the submitted task.
+        wakeup = next;
+        if (isIntakeEmpty() && (scheduler.run || queue.size() != 0)) {
+            if (next == Long.MAX_VALUE) {
+                LockSupport.park(this);
+            } else {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(next - System.currentTimeMillis()));
+            }
+        }
+        wakeup = Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The lock-free histogram of the non-negative values. The values are counted in the log-linear
+ * buckets, each power of two is split into 16 buckets, so the relative error of percentile is less
+ * than 6.25% and the values less than 32 are exact. The recording is wait-free except for the
+ * contention of the same bucket, and never allocates.
+ */
+public final class Histogram {
+
+    /** The number of bits for the sub-buckets. */
+    private static final int SUB = 4;
+
+    /** The number of buckets. */
+    private static final int SIZE = (64 - SUB) << SUB;
+
+    /** The counts of buckets. */
+    private final AtomicLongArray counts;
+
+    /** The total count. */
+    private final LongAdder count = new LongAdder();
+
+    /** The total of values. */
+    private final LongAdder sum = new LongAdder();
+
+    /** The maximum value. */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Create the empty histogram.
+     */
+    public Histogram() {
+        counts = new AtomicLongArray(SIZE);
+    }
+
+    /**
+     * Record the value. The negative value is recorded as zero.
+     * 
+     * @param value The value to record.
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+
+        counts.getAndIncrement(index(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Returns the number of the recorded values.
+     * 
+     * @return The count.
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the maximum of the recorded values.
+     * 
+     * @return The maximum value, or zero if it is empty.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     * 
+     * @return The mean value, or zero if it is empty.
+     */
+    public double mean() {
+        long count = count();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * Returns the value at the specified percentile. The recording may proceed concurrently, so
+     * use {@link #snapshot()} to compute several percentiles on the same values.
+     * 
+     * @param percentile The percentile from 0 to 100.
+     * @return The highest value of the bucket at the percentile, or zero if it is empty.
+     */
+    public long percentile(double percentile) {
+        if (percentile < 0 || 100 < percentile) {
+            throw new IllegalArgumentException("Percentile must be from 0 to 100.");
+        }
+
+        long total = 0;
+        for (int i = 0; i < SIZE; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        for (int i = 0; i < SIZE; i++) {
+            target -= counts.get(i);
+            if (target <= 0) {
+                return Math.min(highest(i), max());
+            }
+        }
+        return max();
+    }
+
+    /**
+     * Take the snapshot of the recorded values.
+     * 
+     * @return The copied histogram.
+     */
+    public Histogram snapshot() {
+        Histogram snapshot = new Histogram();
+        long count = 0;
+        for (int i = 0; i < SIZE; i++) {
+            long value = counts.get(i);
+            snapshot.counts.set(i, value);
+            count += value;
+        }
+        snapshot.count.add(count);
+        snapshot.sum.add(sum.sum());
+        snapshot.max.accumulate(max());
+        return snapshot;
+    }
+
+    /**
+     * Compute the bucket of the value.
+     * 
+     * @param value The non-negative value.
+     * @return The index of bucket.
+     */
+    static int index(long value) {
+        if (value < 2 << SUB) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        return ((exponent - SUB) << SUB) + (int) (value >>> exponent - SUB);
+    }
+
+    /**
+     * Compute the highest value of the bucket.
+     * 
+     * @param index The index of bucket.
+     * @return The highest value.
+     */
+    static long highest(int index) {
+        if (index < 2 << SUB) {
+            return index;
+        }
+        int exponent = (index >>> SUB) + SUB - 1;
+        long lowest = (long) ((1 << SUB) + (index & (1 << SUB) - 1)) << exponent - SUB;
+        return lowest + (1L << exponent - SUB) - 1;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+/**
+ * The instrumentation surface of {@link Scheduler}. The hooks are called on the scheduling,
+ * dispatcher and task threads without any synchronization, so the implementation must be
+ * thread-safe and should be as cheap as possible. All hooks take only the primitive values, and
+ * nothing is measured while no metrics is set to the scheduler.
+ * 
+ * @see Scheduler#setMetrics(Metrics)
+ * @see MetricsRecorder
+ */
+public interface Metrics {
+
+    /**
+     * Called when the task is submitted to the scheduler, including the rescheduling of periodic
+     * task.
+     * 
+     * @param delay The delay until the next trigger time. (ms) It is zero or negative if the task
+     *            is runnable immediately.
+     */
+    default void onSchedule(long delay) {
+    }
+
+    /**
+     * Called when the dispatcher retrieves the expired tasks from its task queue.
+     * 
+     * @param count The number of the dispatched tasks.
+     * @param queued The number of the tasks remaining in the task queue of the dispatcher.
+     */
+    default void onDispatch(int count, int queued) {
+    }
+
+    /**
+     * Called when the dispatcher has been blocked to acquire the permit of the concurrency limit.
+     * 
+     * @param nanos The waiting time. (ns)
+     */
+    default void onWait(long nanos) {
+    }
+
+    /**
+     * Called when the thread of the task actually starts.
+     * 
+     * @param lag The time from the trigger time to the actual start. (ms)
+     */
+    default void onStart(long lag) {
+    }
+
+    /**
+     * Called when the execution of the task is completed.
+     * 
+     * @param nanos The execution time. (ns)
+     * @param failed The flag whether the execution has failed.
+     */
+    default void onComplete(long nanos, boolean failed) {
+    }
+}
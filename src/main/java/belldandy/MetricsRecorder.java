@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The default in-memory {@link Metrics}. The events are counted by the striped counters and the
+ * measured values are recorded into the lock-free {@link Histogram}s, so the recording never blocks
+ * the scheduler. The percentiles are computed from {@link Histogram#snapshot()} on demand.
+ * 
+ * <pre>{@code
+ * MetricsRecorder recorder = new MetricsRecorder();
+ * scheduler.setMetrics(recorder);
+ * 
+ * Histogram lag = recorder.lag().snapshot();
+ * System.out.println(lag.percentile(50) + "ms / " + lag.percentile(99) + "ms");
+ * }</pre>
+ */
+public class MetricsRecorder implements Metrics {
+
+    /** The number of scheduled tasks. */
+    private final LongAdder scheduled = new LongAdder();
+
+    /** The number of dispatched tasks. */
+    private final LongAdder dispatched = new LongAdder();
+
+    /** The number of completed executions. */
+    private final LongAdder completed = new LongAdder();
+
+    /** The number of failed executions. */
+    private final LongAdder failed = new LongAdder();
+
+    /** The queue depth of dispatcher. */
+    private final Histogram depth = new Histogram();
+
+    /** The waiting time for the permit. (ns) */
+    private final Histogram wait = new Histogram();
+
+    /** The start lag. (ms) */
+    private final Histogram lag = new Histogram();
+
+    /** The execution time. (ns) */
+    private final Histogram run = new Histogram();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onSchedule(long delay) {
+        scheduled.increment();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onDispatch(int count, int queued) {
+        dispatched.add(count);
+        depth.record(queued);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onWait(long nanos) {
+        wait.record(nanos);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onStart(long lag) {
+        this.lag.record(lag);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onComplete(long nanos, boolean failed) {
+        run.record(nanos);
+        completed.increment();
+        if (failed) this.failed.increment();
+    }
+
+    /**
+     * Returns the number of the scheduled tasks, including the rescheduling of periodic tasks.
+     * 
+     * @return The count.
+     */
+    public long getScheduledCount() {
+        return scheduled.sum();
+    }
+
+    /**
+     * Returns the number of the tasks which are dispatched from the task queue. The task which is
+     * runnable immediately at scheduling is started without the dispatch.
+     * 
+     * @return The count.
+     */
+    public long getDispatchedCount() {
+        return dispatched.sum();
+    }
+
+    /**
+     * Returns the number of the completed executions, including the failed ones.
+     * 
+     * @return The count.
+     */
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * Returns the number of the failed executions.
+     * 
+     * @return The count.
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Returns the number of the tasks remaining in the task queue at each dispatch.
+     * 
+     * @return The live histogram.
+     */
+    public Histogram depth() {
+        return depth;
+    }
+
+    /**
+     * Returns the time which the dispatcher has been blocked to acquire the permit. (ns)
+     * 
+     * @return The live histogram.
+     */
+    public Histogram permitWait() {
+        return wait;
+    }
+
+    /**
+     * Returns the time from the trigger time to the actual start of the task. (ms)
+     * 
+     * @return The live histogram.
+     */
+    public Histogram lag() {
+        return lag;
+    }
+
+    /**
+     * Returns the execution time of the task. (ns)
+     * 
+     * @return The live histogram.
+     */
+    public Histogram runTime() {
+        return run;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+/**
+ * The policy for the periodic task which has fallen behind its schedule, such as after the long GC
+ * pause, the suspended VM or the saturation of concurrency limit. The task is behind when the
+ * following execution time is already due at the time the task is rescheduled or triggered.
+ * 
+ * @see Scheduler#setMisfirePolicy(Misfire)
+ */
+public enum Misfire {
+
+    /**
+     * Execute all missed executions back-to-back until the task catches up with its schedule.
+     */
+    FIRE_ALL,
+
+    /**
+     * Execute the missed executions only once immediately, and resume the schedule after that.
+     */
+    COALESCE,
+
+    /**
+     * Skip all missed executions, and wait for the next execution time on the schedule.
+     */
+    SKIP;
+}
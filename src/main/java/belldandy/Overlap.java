@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+/**
+ * The policy for the periodic task whose execution outlives its interval.
+ * 
+ * @see Scheduler#setOverlapPolicy(Overlap)
+ */
+public final class Overlap {
+
+    /**
+     * The next execution is scheduled after the current one is finished, so the executions never
+     * overlap and the slow task drifts from its schedule. This is the default policy.
+     */
+    public static final Overlap SERIAL = new Overlap(1, false);
+
+    /**
+     * The running execution is cancelled with the interruption when the next execution starts.
+     */
+    public static final Overlap CANCEL_PREVIOUS = new Overlap(1, true);
+
+    /** The maximum number of the concurrent executions. */
+    final int limit;
+
+    /** The flag whether the previous execution is cancelled. */
+    final boolean cancel;
+
+    /**
+     * Create new policy.
+     * 
+     * @param limit The maximum number of the concurrent executions.
+     * @param cancel The flag whether the previous execution is cancelled.
+     */
+    private Overlap(int limit, boolean cancel) {
+        this.limit = limit;
+        this.cancel = cancel;
+    }
+
+    /**
+     * The next execution is scheduled when the current one starts, so the task keeps its schedule
+     * and the executions overlap up to the specified number. The execution is skipped if the
+     * number of running executions reaches the limit at that time.
+     * 
+     * @param limit The maximum number of the concurrent executions.
+     * @return The policy.
+     * @throws IllegalArgumentException If the limit is less than 1.
+     */
+    public static Overlap concurrent(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive.");
+        }
+        return new Overlap(limit, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return this == SERIAL ? "SERIAL" : cancel ? "CANCEL_PREVIOUS" : "CONCURRENT(" + limit + ")";
+    }
+}
@@ -11,25 +11,31 @@ package belldandy;
 
 import static java.util.concurrent.Executors.*;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoField;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.DelayQueue;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.LongUnaryOperator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A custom scheduler implementation based on the {@link ScheduledExecutorService} interface,
@@ -38,8 +44,10 @@ import java.util.function.LongUnaryOperator;
  * <p>
  * This class extends {@link AbstractExecutorService} and implements
  * {@link ScheduledExecutorService} to provide scheduling capabilities with a task queue and delay
- * mechanisms. It leverages {@link DelayQueue} to manage task execution times, and uses virtual
- * threads to run tasks in a lightweight and efficient manner.
+ * mechanisms. It leverages the indexed heap to manage task execution times, and uses virtual
+ * threads to run tasks in a lightweight and efficient manner. When a huge number of timers are
+ * pending, the hashed hierarchical timing wheel can be selected at construction instead, which
+ * trades the precise ordering within one tick for O(1) insertion and cancellation.
  * </p>
  * 
  * <h2>Core Functionality</h2>
@@ -54,7 +62,25 @@ import java.util.function.LongUnaryOperator;
  * Virtual threads are created in an "unstarted" state when tasks are registered. Execution is
  * delayed until the scheduled time, reducing memory usage. Once the scheduled time arrives, the
  * virtual threads are started and the tasks are executed. If the task is periodic, it is
- * rescheduled after completion.
+ * rescheduled after completion. When a huge number of timers are pending, the thread creation can
+ * be deferred until the dispatch time by {@link #setDeferThreadCreationPolicy(boolean)}. The task
+ * which is runnable immediately, such as the one submitted by {@link #execute(Runnable)}, is started
+ * directly without passing through the task queue as long as the concurrency limit allows and no
+ * expired task is waiting for it.
+ * </p>
+ * <p>
+ * The waiting tasks can be split into several shards, each of which has its own task queue and
+ * dispatcher thread. A task is submitted to the shard picked by the submitting thread, and all
+ * shards share the same limit of concurrent execution. The submitted task is put into the lock-free
+ * intake of the shard at first, and the dispatcher thread drains them in bulk into its private task
+ * queue, so the submission never blocks on the lock of the task queue.
+ * </p>
+ * <p>
+ * The cron tasks on the same expression and time zone are grouped, and only one trigger of the
+ * group waits in the task queue. The trigger computes the next time once and submits all members
+ * at that time. Each member still prepares its own thread, so the values of
+ * {@link InheritableThreadLocal} and the context class loader are inherited from the thread which
+ * scheduled that member at first, and from the previous execution of that member after that.
  * </p>
  * 
  * <h2>Usage</h2>
@@ -67,15 +93,21 @@ import java.util.function.LongUnaryOperator;
  * <li>{@link #scheduleWithFixedDelay(Runnable, long, long, TimeUnit)}: Schedule a task with a fixed
  * delay between executions.</li>
  * <li>{@link #scheduleAt(Runnable, String)}: Schedule a task based on a cron expression.</li>
+ * <li>{@link #scheduleAt(Runnable, CronExpression)}: Schedule a task based on a compiled cron
+ * expression which is shared by many tasks.</li>
+ * <li>{@link #scheduleAt(Runnable, String, ZoneId)}: Schedule a task based on a cron expression in
+ * the specified time zone.</li>
  * </ul>
  * </p>
  * 
  * <h2>Task Lifecycle</h2>
  * <p>
  * The scheduler maintains internal counters to track running tasks and completed tasks using
- * {@link AtomicLong}. The task queue is managed through {@link DelayQueue}, which ensures tasks
+ * {@link AtomicLong}. The task queue is ordered by the trigger time, which ensures tasks
  * are executed at the correct time. Each task is wrapped in a custom {@link Task} class that
- * handles execution, cancellation, and rescheduling (for periodic tasks).
+ * handles execution, cancellation, and rescheduling (for periodic tasks). The lag of dispatch, the
+ * depth of task queue, the waiting time for the concurrency limit and the execution time can be
+ * observed by {@link #setMetrics(Metrics)}.
  * </p>
  * 
  * <h2>Shutdown and Termination</h2>
@@ -92,14 +124,38 @@ public class Scheduler extends AbstractExecutorService implements ScheduledExecu
     /** The the running task manager. */
     protected final Set<Task> runs = ConcurrentHashMap.newKeySet();
 
-    /** The task queue. */
-    protected DelayQueue<Task> queue = new DelayQueue();
+    /** The task dispatchers. */
+    final Dispatcher[] dispatchers;
 
     /** The running state of task queue. */
-    private volatile boolean run = true;
+    volatile boolean run = true;
 
     /** Controls the number of tasks that can be executed concurrently. */
-    private final Semaphore max;
+    final Semaphore max;
+
+    /** The number of dispatchers which are blocked for the permit to execute the expired task. */
+    final AtomicInteger waiting = new AtomicInteger();
+
+    /** The policy on whether the cancelled task is removed from the task queue immediately. */
+    volatile boolean removeOnCancel = true;
+
+    /** The policy on whether the thread is created when the task is dispatched. */
+    volatile boolean deferThread;
+
+    /** The policy for the missed executions of the periodic tasks, null means the default. */
+    volatile Misfire misfire;
+
+    /** The policy for the overlapped executions of the periodic tasks. */
+    volatile Overlap overlap = Overlap.SERIAL;
+
+    /** The instrumentation, null means nothing is measured. */
+    volatile Metrics metrics;
+
+    /** The number of the skipped executions. */
+    final LongAdder skipped = new LongAdder();
+
+    /** The cron groups which share the trigger. */
+    final ConcurrentHashMap<CronGroup.Key, CronGroup> groups = new ConcurrentHashMap();
 
     public Scheduler() {
         this(Integer.MAX_VALUE);
@@ -109,25 +165,58 @@ public class Scheduler extends AbstractExecutorService implements ScheduledExecu
      * @param limit Controls the number of tasks that can be executed concurrently.
      */
     public Scheduler(int limit) {
-        max = new Semaphore(limit);
+        this(limit, 1);
+    }
 
-        Thread.ofVirtual().start(() -> {
-            try {
-                while (run || !queue.isEmpty()) {
-                    max.acquire();
-                    Task task = queue.take();
-                    // Task execution state management is performed before thread execution because
-                    // it is too slow if the task execution state management is performed within the
-                    // task's execution thread.
-                    runs.add(task);
-
-                    // execute task actually
-                    task.thread.start();
-                }
-            } catch (InterruptedException e) {
-                // stop
-            }
-        });
+    /**
+     * Create the sharded scheduler. Each shard has its own task queue and dispatcher thread, and the
+     * task is submitted to the shard which is picked by the submitting thread, so the submissions
+     * from many threads do not contend on the single queue. All shards share the concurrency limit.
+     * 
+     * @param limit Controls the number of tasks that can be executed concurrently.
+     * @param shards The number of shards.
+     */
+    public Scheduler(int limit, int shards) {
+        this(limit, shards, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create the scheduler which manages the waiting tasks by the hashed hierarchical timing wheel
+     * instead of the indexed heap. The timing wheel provides O(1) insertion and cancellation, but
+     * the tasks are expired per tick, so they can be delayed up to one tick and the tasks in the
+     * same tick are not ordered.
+     * 
+     * @param limit Controls the number of tasks that can be executed concurrently.
+     * @param tick The length of one tick of the timing wheel. If it is zero or less, the precise
+     *            indexed heap is used.
+     * @param unit The unit of tick.
+     */
+    public Scheduler(int limit, long tick, TimeUnit unit) {
+        this(limit, 1, tick, unit);
+    }
+
+    /**
+     * Create the sharded scheduler with the specified task queue.
+     * 
+     * @param limit Controls the number of tasks that can be executed concurrently.
+     * @param shards The number of shards.
+     * @param tick The length of one tick of the timing wheel. If it is zero or less, the precise
+     *            indexed heap is used.
+     * @param unit The unit of tick.
+     * @see #Scheduler(int, int)
+     * @see #Scheduler(int, long, TimeUnit)
+     */
+    public Scheduler(int limit, int shards, long tick, TimeUnit unit) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("Shards must be positive.");
+        }
+
+        max = new Semaphore(limit);
+        dispatchers = new Dispatcher[shards];
+        for (int i = 0; i < shards; i++) {
+            dispatchers[i] = new Dispatcher(this, tick <= 0 ? new TaskHeap() : new TimingWheel(Math.max(1, unit.toMillis(tick))));
+            dispatchers[i].thread = Thread.ofVirtual().start(dispatchers[i]);
+        }
     }
 
     /**
@@ -137,38 +226,214 @@ public class Scheduler extends AbstractExecutorService implements ScheduledExecu
      */
     protected Task executeTask(Task<?> task) {
         if (!run) {
+            TaskEvent.Reject event = new TaskEvent.Reject();
+            if (event.isEnabled()) event.commit(task);
             throw new RejectedExecutionException();
         }
 
-        if (!task.isCancelled()) {
+        if (task.triggering != null) {
+            // The trigger of cron group is internal, it is always fired by the dispatcher without
+            // any permit, thread or instrumentation. See Dispatcher#fire(Task).
+            dispatchers[(int) (Thread.currentThread().threadId() % dispatchers.length)].add(task);
+        } else if (!task.isCancelled()) {
+            Metrics metrics = this.metrics;
+            if (metrics != null) metrics.onSchedule(task.next - System.currentTimeMillis());
+            TaskEvent.Schedule event = new TaskEvent.Schedule();
+            if (event.isEnabled()) event.commit(task);
+
+            // The periodic task is rescheduled on its own thread before it is unregistered from the
+            // running tasks, so it must go through the task queue.
+            boolean rescheduling = task.thread == Thread.currentThread();
+
+            // The member of cron group is submitted on the thread of trigger, so its thread is
+            // prepared by itself instead. See Scheduler#prepare(Task).
+            if (task.group == null) prepare(task);
+
+            if (!rescheduling && task.next <= System.currentTimeMillis() && waiting.get() == 0 && max.tryAcquire()) {
+                // The immediately runnable task is started directly, bypassing both the task queue
+                // and the dispatcher thread.
+                runs.add(task);
+                task.wait = 0;
+                task.dispatcher = null;
+                start(task);
+            } else {
+                // The shard is picked by the submitting thread, so the producers are spread over
+                // the shards without any coordination.
+                dispatchers[(int) (Thread.currentThread().threadId() % dispatchers.length)].add(task);
+            }
+        }
+
+        return task;
+    }
+
+    /**
+     * Execute the task on the current thread, and reschedule it if it is periodic.
+     * 
+     * @param task The task to execute.
+     */
+    private void process(Task task) {
+        try {
+            if (!task.isDone()) {
+                Metrics metrics = this.metrics;
+                TaskEvent.Start started = new TaskEvent.Start();
+                TaskEvent.End end = new TaskEvent.End();
+                boolean measured = metrics != null || started.isEnabled() || end.isEnabled();
+                long start = 0;
+                if (measured) {
+                    task.start = System.currentTimeMillis();
+                    start = System.nanoTime();
+
+                    if (metrics != null) metrics.onStart(task.start - task.next);
+                    if (started.isEnabled()) started.commit(task, task.start);
+                    end.begin();
+                }
+
+                if (task.instances == null) {
+                    task.run();
+                } else {
+                    overlap(task);
+                }
+
+                if (measured) {
+                    long duration = System.nanoTime() - start;
+                    boolean failed = task.state() == Future.State.FAILED;
+
+                    if (metrics != null) metrics.onComplete(duration, failed);
+                    if (end.isEnabled()) end.commit(task, duration, failed);
+                }
+
+                if (task.interval == null || !run || task.isDone()) {
+                    // one shot, scheduler is already stopped or task is failed
+                } else if (task.group != null) {
+                    // the member of cron group is triggered by the group, but its next thread is
+                    // prepared on its own thread as same as the rescheduled periodic task
+                    task.next = task.group.next;
+                    prepare(task);
+                } else {
+                    // reschedule task on its base time, and then delay it by the new jitter
+                    long next = task.interval.applyAsLong(task.next - task.offset);
+                    if (task.misfire != Misfire.FIRE_ALL) next = misfire(task, next);
+                    task.offset = jitter(task.jitter);
+                    task.next = next + task.offset;
+                    executeTask(task);
+                }
+            }
+        } finally {
+            runs.remove(task);
+            task.pending = false;
+            max.release();
+        }
+    }
+
+    /**
+     * Start the execution of the periodic task whose executions may overlap. The execution runs
+     * as the separated task, so the periodic task is rescheduled without waiting for it.
+     * 
+     * @param task The periodic task.
+     */
+    private void overlap(Task task) {
+        Set<Task> instances = task.instances;
+        if (task.overlap.cancel) {
+            for (Task instance : instances) {
+                instance.cancel(true);
+            }
+        } else if (task.overlap.limit <= instances.size()) {
+            skipped.increment();
+            return;
+        }
+
+        try {
+            executeTask(task.instance());
+        } catch (RejectedExecutionException e) {
+            // scheduler is already stopped
+        }
+    }
+
+    /**
+     * Prepare the thread of task on the current thread, so the task inherits the context of the
+     * current thread.
+     * 
+     * @param task The task to prepare.
+     */
+    void prepare(Task task) {
+        if (deferThread) {
+            // Only the context class loader is captured, and the thread is created when the
+            // task is dispatched. See Scheduler#start(Task).
+            task.thread = null;
+            task.loader = Thread.currentThread().getContextClassLoader();
+        } else {
             // Threads are created when a task is registered, but execution is delayed until the
-            // scheduled time. Although it would be simpler to immediately schedule the task using
-            // Thread#sleep after execution, this implementation method is used to reduce memory
-            // usage as much as possible. Note that only the creation of the thread is done first,
-            // since the information is not inherited by InheritableThreadLocal if the thread is
-            // simply placed in the task queue.
-            task.thread = Thread.ofVirtual().unstarted(() -> {
-                try {
-                    if (!task.isCancelled()) {
-                        task.run();
-
-                        if (task.interval == null || !run) {
-                            // one shot or scheduler is already stopped
-                        } else {
-                            // reschedule task
-                            task.next = task.interval.applyAsLong(task.next);
-                            executeTask(task);
-                        }
-                    }
-                } finally {
-                    runs.remove(task);
-                    max.release();
+            // scheduled time. Although it would be simpler to immediately schedule the task
+            // using Thread#sleep after execution, this implementation method is used to reduce
+            // memory usage as much as possible. Note that only the creation of the thread is
+            // done first, since the information is not inherited by InheritableThreadLocal if
+            // the thread is simply placed in the task queue.
+            task.thread = Thread.ofVirtual().unstarted(() -> process(task));
+        }
+    }
+
+    /**
+     * Apply the misfire policy to the periodic task which has fallen behind its schedule. The task
+     * is behind if the time following the next time is also due. The times are compared without
+     * the jitter, so the probe never disturbs the base schedule.
+     * 
+     * @param task The task to reschedule.
+     * @param due The next base time. (epoch ms)
+     * @return The adjusted next base time. (epoch ms)
+     */
+    private long misfire(Task task, long due) {
+        long now = System.currentTimeMillis();
+        if (due <= now) {
+            long following = task.interval.applyAsLong(due);
+            if (following <= now) {
+                // count the due times except the latest one
+                long count = 0;
+                do {
+                    due = following;
+                    following = task.interval.applyAsLong(due);
+                    count++;
+                } while (following <= now);
+
+                if (task.misfire != Misfire.COALESCE) {
+                    due = following;
+                    count++;
                 }
-            });
-            queue.add(task);
+                skipped.add(count);
+            }
         }
+        return due;
+    }
 
-        return task;
+    /**
+     * Start the thread of the expired task. If the thread creation is deferred, the thread is
+     * created here with the context class loader captured at schedule time.
+     * 
+     * @param task The task to start.
+     */
+    void start(Task task) {
+        TaskEvent.Dispatch event = new TaskEvent.Dispatch();
+        if (event.isEnabled()) event.commit(task);
+
+        Thread thread = task.thread;
+        if (thread == null) {
+            thread = Thread.ofVirtual().inheritInheritableThreadLocals(false).unstarted(() -> process(task));
+            thread.setContextClassLoader(task.loader);
+            task.thread = thread;
+        }
+        thread.start();
+    }
+
+    /**
+     * Count the number of tasks which are waiting in all shards.
+     * 
+     * @return The number of queued tasks.
+     */
+    int queued() {
+        int count = 0;
+        for (Dispatcher dispatcher : dispatchers) {
+            count += dispatcher.size();
+        }
+        return count;
     }
 
     /**
@@ -192,7 +457,35 @@ public class Scheduler extends AbstractExecutorService implements ScheduledExecu
      */
     @Override
     public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long delay, long interval, TimeUnit unit) {
-        return executeTask(new Task(callable(command), next(delay, unit), old -> old + unit.toMillis(interval)));
+        return scheduleAtFixedRate(command, delay, interval, 0, unit);
+    }
+
+    /**
+     * Schedules a task to be executed periodically at the fixed rate, and delays each execution by
+     * the random jitter.
+     * <p>
+     * The jitter is drawn from 0 to the specified bound independently for each execution, and it
+     * is removed from the previous time before the next one is computed. So the jitter never
+     * accumulates and the task keeps its rate in the long run, while the identical tasks which are
+     * scheduled at the same time are spread over the jitter window instead of firing together
+     * forever.
+     * </p>
+     * 
+     * @param command The {@code Runnable} task to be scheduled for periodic execution.
+     * @param delay The time to delay first execution.
+     * @param interval The period between successive executions.
+     * @param jitter The maximum jitter which is added to each execution time.
+     * @param unit The time unit of the delay, interval and jitter.
+     * @return A {@code ScheduledFuture<?>} representing the pending completion of the task.
+     * @throws IllegalArgumentException If the jitter is negative.
+     * @see #scheduleAtFixedRate(Runnable, long, long, TimeUnit)
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long delay, long interval, long jitter, TimeUnit unit) {
+        Task task = new Task(callable(command), next(delay, unit), old -> old + unit.toMillis(interval));
+        task.jitter(bound(jitter, unit));
+        task.misfire = Objects.requireNonNullElse(misfire, Misfire.FIRE_ALL);
+        task.overlap(overlap);
+        return executeTask(task);
     }
 
     /**
@@ -200,7 +493,52 @@ public class Scheduler extends AbstractExecutorService implements ScheduledExecu
      */
     @Override
     public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long delay, long interval, TimeUnit unit) {
-        return executeTask(new Task(callable(command), next(delay, unit), old -> System.currentTimeMillis() + unit.toMillis(interval)));
+        return scheduleWithFixedDelay(command, delay, interval, 0, unit);
+    }
+
+    /**
+     * Schedules a task to be executed periodically with the fixed delay between the end of one
+     * execution and the start of the next, and delays each execution by the random jitter which is
+     * drawn from 0 to the specified bound.
+     * 
+     * @param command The {@code Runnable} task to be scheduled for periodic execution.
+     * @param delay The time to delay first execution.
+     * @param interval The delay between the end of one execution and the start of the next.
+     * @param jitter The maximum jitter which is added to each execution time.
+     * @param unit The time unit of the delay, interval and jitter.
+     * @return A {@code ScheduledFuture<?>} representing the pending completion of the task.
+     * @throws IllegalArgumentException If the jitter is negative.
+     * @see #scheduleWithFixedDelay(Runnable, long, long, TimeUnit)
+     */
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long delay, long interval, long jitter, TimeUnit unit) {
+        Task task = new Task(callable(command), next(delay, unit), old -> System.currentTimeMillis() + unit.toMillis(interval));
+        task.jitter(bound(jitter, unit));
+        return executeTask(task);
+    }
+
+    /**
+     * Validate the bound of jitter.
+     * 
+     * @param jitter The maximum jitter.
+     * @param unit The time unit of the jitter.
+     * @return The maximum jitter. (ms)
+     * @throws IllegalArgumentException If the jitter is negative.
+     */
+    private static long bound(long jitter, TimeUnit unit) {
+        if (jitter < 0) {
+            throw new IllegalArgumentException("Jitter must be positive or zero.");
+        }
+        return unit.toMillis(jitter);
+    }
+
+    /**
+     * Draw the random jitter.
+     * 
+     * @param bound The maximum jitter. (ms)
+     * @return The jitter from 0 to the bound. (ms)
+     */
+    static long jitter(long bound) {
+        return bound == 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
     }
 
     /**
@@ -223,10 +561,236 @@ public class Scheduler extends AbstractExecutorService implements ScheduledExecu
      * @throws IllegalArgumentException If the cron format is invalid or cannot be parsed correctly.
      */
     public ScheduledFuture<?> scheduleAt(Runnable command, String format) {
-        Cron[] fields = parse(format);
-        LongUnaryOperator next = old -> next(fields, ZonedDateTime.now()).toInstant().toEpochMilli();
+        return scheduleAt(command, CronExpression.of(format));
+    }
+
+    /**
+     * Schedules a task to be executed periodically based on the compiled cron expression. The
+     * expression is not parsed again, so the same {@link CronExpression} can be shared by any number
+     * of tasks.
+     * 
+     * @param command The {@code Runnable} task to be scheduled for periodic execution.
+     * @param cron The compiled cron expression that defines the schedule for task execution.
+     * @return A {@code ScheduledFuture<?>} representing the pending completion of the task.
+     * @see #scheduleAt(Runnable, String)
+     */
+    public ScheduledFuture<?> scheduleAt(Runnable command, CronExpression cron) {
+        return scheduleAt(command, cron, ZoneId.systemDefault());
+    }
+
+    /**
+     * Schedules a task to be executed periodically based on a cron expression in the specified
+     * time zone.
+     * <p>
+     * The cron fields are evaluated on the local time of the zone. The local time which is skipped
+     * by the gap of daylight saving time is executed at the end of the gap, and the local time
+     * which is repeated by the overlap is executed only at its first occurrence. The offset
+     * transitions of each zone are cached, so the next time computation never looks up the zone
+     * rules.
+     * </p>
+     * 
+     * @param command The {@code Runnable} task to be scheduled for periodic execution.
+     * @param format A valid cron expression that defines the schedule for task execution.
+     * @param zone The time zone to evaluate the cron expression.
+     * @return A {@code ScheduledFuture<?>} representing the pending completion of the task.
+     * @throws IllegalArgumentException If the cron format is invalid or cannot be parsed correctly.
+     */
+    public ScheduledFuture<?> scheduleAt(Runnable command, String format, ZoneId zone) {
+        return scheduleAt(command, CronExpression.of(format), zone);
+    }
+
+    /**
+     * Schedules a task to be executed periodically based on the compiled cron expression in the
+     * specified time zone.
+     * 
+     * @param command The {@code Runnable} task to be scheduled for periodic execution.
+     * @param cron The compiled cron expression that defines the schedule for task execution.
+     * @param zone The time zone to evaluate the cron expression.
+     * @return A {@code ScheduledFuture<?>} representing the pending completion of the task.
+     * @see #scheduleAt(Runnable, String, ZoneId)
+     */
+    public ScheduledFuture<?> scheduleAt(Runnable command, CronExpression cron, ZoneId zone) {
+        Objects.requireNonNull(zone);
+        if (!run) {
+            TaskEvent.Reject event = new TaskEvent.Reject();
+            if (event.isEnabled()) event.commit();
+            throw new RejectedExecutionException();
+        }
+
+        // The tasks on the same expression and time zone share the single trigger in the task
+        // queue, which computes the next time once and submits all members at that time.
+        Task[] member = new Task[1];
+        groups.compute(new CronGroup.Key(cron, zone, Objects.requireNonNullElse(misfire, Misfire.COALESCE)), (key, group) -> {
+            if (group == null) {
+                group = new CronGroup(this, key);
+                executeTask(group.trigger);
+            }
+            member[0] = group.join(callable(command), overlap);
+            return group;
+        });
+        return member[0];
+    }
+
+    /**
+     * Changes the trigger time of the task which is waiting for execution. The task is reordered
+     * in O(log n) without being recreated, so the returned {@link ScheduledFuture} remains valid.
+     * If the task is periodic, the subsequent trigger times are calculated from the new one.
+     * 
+     * @param future The task which is scheduled by this scheduler.
+     * @param delay The new delay from now.
+     * @param unit The unit of delay.
+     * @return true if the trigger time was changed, false if the task is not scheduled by this
+     *         scheduler, or is already running, completed or cancelled.
+     */
+    public boolean reschedule(ScheduledFuture<?> future, long delay, TimeUnit unit) {
+        if (future instanceof Task task && task.group == null && !task.isDone() && !runs.contains(task)) {
+            Dispatcher dispatcher = task.dispatcher;
+            if (dispatcher == null || dispatcher.scheduler == this) {
+                task.next = next(delay, unit);
+
+                if (dispatcher != null) {
+                    dispatcher.update(task);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the policy on whether the cancelled task should be immediately removed from the task
+     * queue. If false, the cancellation costs nothing but an increment of the counter, and the
+     * cancelled task remains in the queue until the compaction which purges all cancelled tasks at
+     * once. This policy is true by default.
+     * 
+     * @param value If true, remove on cancellation, otherwise don't.
+     * @see java.util.concurrent.ScheduledThreadPoolExecutor#setRemoveOnCancelPolicy(boolean)
+     */
+    public void setRemoveOnCancelPolicy(boolean value) {
+        removeOnCancel = value;
+    }
+
+    /**
+     * Returns the policy on whether the cancelled task should be immediately removed from the task
+     * queue.
+     * 
+     * @return true if the cancelled task is immediately removed from the queue.
+     * @see #setRemoveOnCancelPolicy(boolean)
+     */
+    public boolean getRemoveOnCancelPolicy() {
+        return removeOnCancel;
+    }
 
-        return executeTask(new Task(callable(command), next.applyAsLong(0L), next));
+    /**
+     * Sets the policy on whether the thread of the task should be created when the task is
+     * dispatched rather than when it is scheduled. This policy is false by default.
+     * <p>
+     * By default, the unstarted virtual thread is created at schedule time, so the values of
+     * {@link InheritableThreadLocal} are inherited from the scheduling thread. But every waiting
+     * task retains its own thread object for the whole waiting period. If true, the waiting task
+     * retains only the context class loader of the scheduling thread, which is applied to the
+     * thread created at dispatch time. Since there is no public API to take a snapshot of the
+     * inheritable thread locals, they are NOT inherited in this mode.
+     * </p>
+     * 
+     * @param value If true, create the thread at dispatch time, otherwise at schedule time.
+     */
+    public void setDeferThreadCreationPolicy(boolean value) {
+        deferThread = value;
+    }
+
+    /**
+     * Returns the policy on whether the thread of the task should be created when the task is
+     * dispatched.
+     * 
+     * @return true if the thread is created at dispatch time.
+     * @see #setDeferThreadCreationPolicy(boolean)
+     */
+    public boolean getDeferThreadCreationPolicy() {
+        return deferThread;
+    }
+
+    /**
+     * Sets the policy for the missed executions of the periodic tasks which are scheduled after
+     * this call. It is applied when the task has fallen behind its schedule, such as after the long
+     * GC pause, the suspended VM or the saturation of concurrency limit. The task scheduled with the
+     * fixed delay never falls behind, since its next time is always computed from the end of
+     * execution.
+     * <p>
+     * If null (default), the fixed-rate task executes all missed executions as same as
+     * {@link java.util.concurrent.ScheduledThreadPoolExecutor}, and the cron task coalesces them.
+     * The cron tasks on the same expression are grouped only if they have the same policy.
+     * </p>
+     * 
+     * @param value The policy, or null for the default.
+     * @see #getSkippedExecutionCount()
+     */
+    public void setMisfirePolicy(Misfire value) {
+        misfire = value;
+    }
+
+    /**
+     * Returns the policy for the missed executions of the periodic tasks.
+     * 
+     * @return The policy, or null for the default.
+     * @see #setMisfirePolicy(Misfire)
+     */
+    public Misfire getMisfirePolicy() {
+        return misfire;
+    }
+
+    /**
+     * Sets the policy for the overlapped executions of the periodic tasks which are scheduled after
+     * this call. It is applied to the fixed-rate and cron tasks whose execution outlives the
+     * interval. The task scheduled with the fixed delay never overlaps, since its next time is
+     * always computed from the end of execution. This policy is {@link Overlap#SERIAL} by default.
+     * 
+     * @param value The policy.
+     */
+    public void setOverlapPolicy(Overlap value) {
+        overlap = Objects.requireNonNull(value);
+    }
+
+    /**
+     * Returns the policy for the overlapped executions of the periodic tasks.
+     * 
+     * @return The policy.
+     * @see #setOverlapPolicy(Overlap)
+     */
+    public Overlap getOverlapPolicy() {
+        return overlap;
+    }
+
+    /**
+     * Sets the instrumentation of this scheduler. The hooks are called at the scheduling, the
+     * dispatch, the start and the completion of task. If null (default), nothing is measured and
+     * the hooks cost only the null check.
+     * 
+     * @param value The metrics, or null to stop measuring.
+     * @see MetricsRecorder
+     */
+    public void setMetrics(Metrics value) {
+        metrics = value;
+    }
+
+    /**
+     * Returns the instrumentation of this scheduler.
+     * 
+     * @return The metrics, or null if nothing is measured.
+     * @see #setMetrics(Metrics)
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the total number of the executions which are skipped by the misfire policy, the
+     * overlap policy or the previous execution still running.
+     * 
+     * @return The number of the skipped executions.
+     */
+    public long getSkippedExecutionCount() {
+        return skipped.sum();
     }
 
     /**
@@ -239,21 +803,77 @@ public class Scheduler extends AbstractExecutorService implements ScheduledExecu
      *
      * @param cron the cron expression to parse
      * @return an array of {@link Cron} objects representing the parsed cron fields.
-     * @throws IllegalArgumentException if the cron expression does not have 5 or 6 parts
+     * @throws IllegalArgumentException if the cron expression does not have 5 or 6 parts, or it
+     *             can never be executed
      */
     static Cron[] parse(String cron) {
-        String[] parts = cron.strip().split("\\s+");
-        int i = parts.length - 5;
+        // split the expression by whitespaces in a single pass, [start, end) pairs of each part
+        int[] parts = new int[12];
+        int count = 0;
+        for (int i = 0, length = cron.length(); i < length;) {
+            if (Character.isWhitespace(cron.charAt(i))) {
+                i++;
+            } else {
+                if (count == 6) {
+                    throw new IllegalArgumentException(cron);
+                }
+                parts[count * 2] = i;
+                while (i < length && !Character.isWhitespace(cron.charAt(i))) {
+                    i++;
+                }
+                parts[count++ * 2 + 1] = i;
+            }
+        }
+
+        int i = count - 5;
         if (i != 0 && i != 1) {
             throw new IllegalArgumentException(cron);
         }
+        i *= 2;
+
+        Cron[] fields = {
+                i == 2 ? new Cron(ChronoField.SECOND_OF_MINUTE, 0, 59, "", "", "/", cron, parts[0], parts[1])
+                        : new Cron(ChronoField.SECOND_OF_MINUTE, 0, 59, "", "", "/", "0"),
+                new Cron(ChronoField.MINUTE_OF_HOUR, 0, 59, "", "", "/", cron, parts[i++], parts[i++]),
+                new Cron(ChronoField.HOUR_OF_DAY, 0, 23, "", "", "/", cron, parts[i++], parts[i++]),
+                new Cron(ChronoField.DAY_OF_MONTH, 1, 31, "", "?LW", "/", cron, parts[i++], parts[i++]),
+                new Cron(ChronoField.MONTH_OF_YEAR, 1, 12, "JAN FEB MAR APR MAY JUN JUL AUG SEP OCT NOV DEC ", "", "/", cron, parts[i++], parts[i++]),
+                new Cron(ChronoField.DAY_OF_WEEK, 1, 7, "MON TUE WED THU FRI SAT SUN ", "?L", "#/", cron, parts[i++], parts[i++])};
 
-        return new Cron[] {new Cron(ChronoField.SECOND_OF_MINUTE, 0, 59, "", "", "/", i == 1 ? parts[0] : "0"),
-                new Cron(ChronoField.MINUTE_OF_HOUR, 0, 59, "", "", "/", parts[i++]),
-                new Cron(ChronoField.HOUR_OF_DAY, 0, 23, "", "", "/", parts[i++]),
-                new Cron(ChronoField.DAY_OF_MONTH, 1, 31, "", "?LW", "/", parts[i++]),
-                new Cron(ChronoField.MONTH_OF_YEAR, 1, 12, "JAN FEB MAR APR MAY JUN JUL AUG SEP OCT NOV DEC ", "", "/", parts[i++]),
-                new Cron(ChronoField.DAY_OF_WEEK, 1, 7, "MON TUE WED THU FRI SAT SUN ", "?L", "#/", parts[i++])};
+        if (!satisfiable(fields)) {
+            throw new IllegalArgumentException("Cron expression [" + cron + "] can never be executed.");
+        }
+        return fields;
+    }
+
+    /**
+     * Checks statically whether the day related fields can be satisfied on any calendar day.
+     * <p>
+     * The day matching depends only on the month, the length of month and the day of week of the
+     * first day, and every combination of them appears in the real calendar. So this method tries
+     * all combinations without the date search. Even if this method returns true, the combination
+     * may be too rare to be found by {@link #next(Cron[], long, ZoneId)} (e.g. Feb 29 on Monday
+     * appears only once in 28 years).
+     * </p>
+     *
+     * @param cron an array of {@link Cron} objects representing the parsed cron fields
+     * @return true if some day matches the all day related fields
+     */
+    static boolean satisfiable(Cron[] cron) {
+        for (int month = 1; month <= 12; month++) {
+            if (cron[4].next(month) != month) {
+                continue;
+            }
+
+            for (int last = lengthOfMonth(2001, month); last <= lengthOfMonth(2000, month); last++) {
+                for (int first = 1; first <= 7; first++) {
+                    if ((cron[3].days(last, first) & cron[5].days(last, first)) != 0) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
     }
 
     /**
@@ -267,27 +887,302 @@ public class Scheduler extends AbstractExecutorService implements ScheduledExecu
      * @param base the {@link ZonedDateTime} representing the base time to start the search from
      * @return the next execution time as a {@link ZonedDateTime}
      * @throws IllegalArgumentException if no matching execution time is found within four years
+     * @see #next(Cron[], long, ZoneId)
      */
     static ZonedDateTime next(Cron[] cron, ZonedDateTime base) {
+        return Instant.ofEpochSecond(next(cron, base.toEpochSecond(), base.getZone())).atZone(base.getZone());
+    }
+
+    /**
+     * Calculates the next execution time based on the provided cron fields and a base time without
+     * any allocation.
+     * <p>
+     * The search is performed on the primitive local time (epoch seconds plus the zone offset), and
+     * the matched local time is resolved to the instant. The local time which is skipped by the gap
+     * of time-zone transition is executed at the end of the gap, and the local time which is
+     * repeated by the overlap is executed only at its first occurrence.
+     * </p>
+     * 
+     * @param cron an array of {@link Cron} objects representing the parsed cron fields
+     * @param base the base time to start the search from (epoch seconds)
+     * @param zone the time zone to evaluate the cron fields
+     * @return the next execution time (epoch seconds), which is always after the base time
+     * @throws IllegalArgumentException if no matching execution time is found within four years
+     */
+    static long next(Cron[] cron, long base, ZoneId zone) {
+        ZoneTable table = ZoneTable.of(zone);
+
+        long local = base + table.offset(base) + 1;
+        while (true) {
+            local = next(cron, local);
+
+            long next = table.resolve(local);
+            if (base < next) {
+                return next;
+            }
+            local++;
+        }
+    }
+
+    /**
+     * Finds the first local time which matches the all cron fields.
+     * 
+     * @param cron an array of {@link Cron} objects representing the parsed cron fields
+     * @param local the local time to start the search from (local epoch seconds)
+     * @return the matched local time (local epoch seconds)
+     * @throws IllegalArgumentException if no matching execution time is found within four years
+     */
+    static long next(Cron[] cron, long local) {
+        if (cron[3].every && cron[4].every && cron[5].every) {
+            return daily(cron, local);
+        }
+
         // The range is four years, taking into account leap years.
-        ZonedDateTime limit = base.plusYears(4);
+        long limit = local + (365 * 4 + 1) * 86400L;
+
+        while (local <= limit) {
+            long epochDay = Math.floorDiv(local, 86400);
+            int time = Math.floorMod(local, 86400);
+
+            // convert the epoch day to the civil date (days_from_civil algorithm by H. Hinnant)
+            long z = epochDay + 719468;
+            long era = Math.floorDiv(z, 146097);
+            int doe = (int) (z - era * 146097);
+            int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+            int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+            int mp = (5 * doy + 2) / 153;
+            int day = doy - (153 * mp + 2) / 5 + 1;
+            int month = mp < 10 ? mp + 3 : mp - 9;
+            long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+            int next = cron[4].next(month);
+            if (next != month) {
+                local = next == -1 ? epochDay(year + 1, cron[4].next(1), 1) * 86400 : epochDay(year, next, 1) * 86400;
+                continue;
+            }
+
+            int last = lengthOfMonth(year, month);
+            int first = Math.floorMod(epochDay - day + 4, 7) + 1;
+            int days = cron[3].days(last, first) & cron[5].days(last, first) & -1 << day - 1;
+            if (days == 0) {
+                local = (epochDay - day + last + 1) * 86400;
+                continue;
+            }
+
+            next = Integer.numberOfTrailingZeros(days) + 1;
+            if (next != day) {
+                local = (epochDay - day + next) * 86400;
+                continue;
+            }
+
+            int hour = time / 3600;
+            next = cron[2].next(hour);
+            if (next != hour) {
+                local = next == -1 ? (epochDay + 1) * 86400 : epochDay * 86400 + next * 3600;
+                continue;
+            }
+
+            int minute = time / 60 % 60;
+            next = cron[1].next(minute);
+            if (next != minute) {
+                local = next == -1 ? epochDay * 86400 + (hour + 1) * 3600 : epochDay * 86400 + hour * 3600 + next * 60;
+                continue;
+            }
+
+            int second = time % 60;
+            next = cron[0].next(second);
+            if (next != second) {
+                local = next == -1 ? epochDay * 86400 + hour * 3600 + (minute + 1) * 60 : local - second + next;
+                continue;
+            }
+            return local;
+        }
+        throw new IllegalArgumentException("Next time is not found before " + LocalDateTime.ofEpochSecond(limit, 0, ZoneOffset.UTC));
+    }
+
+    /**
+     * Finds the first local time which matches the time of day fields. Every day matches the
+     * expression whose day related fields are all unrestricted, so the next time is computed in
+     * constant time without the calendar conversion.
+     * 
+     * @param cron an array of {@link Cron} objects representing the parsed cron fields
+     * @param local the local time to start the search from (local epoch seconds)
+     * @return the matched local time (local epoch seconds)
+     */
+    private static long daily(Cron[] cron, long local) {
+        long day = Math.floorDiv(local, 86400) * 86400;
+        int time = (int) (local - day);
+        int hour = time / 3600;
+        int minute = time / 60 % 60;
 
-        ZonedDateTime[] next = {base.plusSeconds(1).truncatedTo(ChronoUnit.SECONDS)};
-        root: while (true) {
-            if (next[0].isAfter(limit)) throw new IllegalArgumentException("Next time is not found before " + limit);
-            if (!cron[4].matches(next)) continue;
+        int next = cron[2].next(hour);
+        if (next == hour) {
+            next = cron[1].next(minute);
+            if (next == minute) {
+                next = cron[0].next(time % 60);
+                if (next != -1) {
+                    return day + hour * 3600 + minute * 60 + next;
+                }
+                next = cron[1].next(minute + 1);
+            }
 
-            int month = next[0].getMonthValue();
-            while (!(cron[3].matches(next[0]) && cron[5].matches(next[0]))) {
-                next[0] = next[0].plusDays(1).truncatedTo(ChronoUnit.DAYS);
-                if (next[0].getMonthValue() != month) continue root;
+            if (next != -1) {
+                return day + hour * 3600 + next * 60 + cron[0].next(0);
             }
+            next = cron[2].next(hour + 1);
+        }
 
-            if (!cron[2].matches(next)) continue;
-            if (!cron[1].matches(next)) continue;
-            if (!cron[0].matches(next)) continue;
-            return next[0];
+        if (next == -1) {
+            day += 86400;
+            next = cron[2].next(0);
         }
+        return day + next * 3600 + cron[1].next(0) * 60 + cron[0].next(0);
+    }
+
+    /**
+     * Calculates the previous execution time based on the provided cron fields and a base time.
+     * 
+     * @param cron an array of {@link Cron} objects representing the parsed cron fields
+     * @param base the {@link ZonedDateTime} representing the base time to start the search from
+     * @return the previous execution time as a {@link ZonedDateTime}
+     * @throws IllegalArgumentException if no matching execution time is found within four years
+     * @see #previous(Cron[], long, ZoneId)
+     */
+    static ZonedDateTime previous(Cron[] cron, ZonedDateTime base) {
+        return Instant.ofEpochSecond(previous(cron, base.toEpochSecond(), base.getZone())).atZone(base.getZone());
+    }
+
+    /**
+     * Calculates the previous execution time based on the provided cron fields and a base time.
+     * This is the reverse of {@link #next(Cron[], long, ZoneId)}, so the returned time is the
+     * latest one which the forward search can return before the base time, including the gap and
+     * overlap handling of time-zone transition.
+     * 
+     * @param cron an array of {@link Cron} objects representing the parsed cron fields
+     * @param base the base time to start the search from (epoch seconds)
+     * @param zone the time zone to evaluate the cron fields
+     * @return the previous execution time (epoch seconds), which is always before the base time
+     * @throws IllegalArgumentException if no matching execution time is found within four years
+     */
+    static long previous(Cron[] cron, long base, ZoneId zone) {
+        ZoneTable table = ZoneTable.of(zone);
+
+        // Within the overlap, the local times of the earlier instants are later than the local time
+        // of the base time, so the search starts from the latest local time before the base time.
+        long local = table.floorLocal(base - 1);
+        while (true) {
+            local = previous(cron, local);
+
+            long previous = table.resolve(local);
+            if (previous < base) {
+                return previous;
+            }
+            local--;
+        }
+    }
+
+    /**
+     * Finds the last local time which matches the all cron fields.
+     * 
+     * @param cron an array of {@link Cron} objects representing the parsed cron fields
+     * @param local the local time to start the search from (local epoch seconds)
+     * @return the matched local time (local epoch seconds)
+     * @throws IllegalArgumentException if no matching execution time is found within four years
+     */
+    static long previous(Cron[] cron, long local) {
+        // The range is four years, taking into account leap years.
+        long limit = local - (365 * 4 + 1) * 86400L;
+
+        while (limit <= local) {
+            long epochDay = Math.floorDiv(local, 86400);
+            int time = Math.floorMod(local, 86400);
+
+            // convert the epoch day to the civil date (days_from_civil algorithm by H. Hinnant)
+            long z = epochDay + 719468;
+            long era = Math.floorDiv(z, 146097);
+            int doe = (int) (z - era * 146097);
+            int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+            int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+            int mp = (5 * doy + 2) / 153;
+            int day = doy - (153 * mp + 2) / 5 + 1;
+            int month = mp < 10 ? mp + 3 : mp - 9;
+            long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+            int previous = cron[4].previous(month);
+            if (previous != month) {
+                if (previous == -1) {
+                    year--;
+                    previous = cron[4].previous(12);
+                }
+                local = (epochDay(year, previous, lengthOfMonth(year, previous)) + 1) * 86400 - 1;
+                continue;
+            }
+
+            int last = lengthOfMonth(year, month);
+            int first = Math.floorMod(epochDay - day + 4, 7) + 1;
+            int days = cron[3].days(last, first) & cron[5].days(last, first) & -1 >>> 32 - day;
+            if (days == 0) {
+                local = (epochDay - day + 1) * 86400 - 1;
+                continue;
+            }
+
+            previous = 32 - Integer.numberOfLeadingZeros(days);
+            if (previous != day) {
+                local = (epochDay - day + previous + 1) * 86400 - 1;
+                continue;
+            }
+
+            int hour = time / 3600;
+            previous = cron[2].previous(hour);
+            if (previous != hour) {
+                local = previous == -1 ? epochDay * 86400 - 1 : epochDay * 86400 + previous * 3600 + 3599;
+                continue;
+            }
+
+            int minute = time / 60 % 60;
+            previous = cron[1].previous(minute);
+            if (previous != minute) {
+                local = previous == -1 ? epochDay * 86400 + hour * 3600 - 1 : epochDay * 86400 + hour * 3600 + previous * 60 + 59;
+                continue;
+            }
+
+            int second = time % 60;
+            previous = cron[0].previous(second);
+            if (previous != second) {
+                local = previous == -1 ? epochDay * 86400 + hour * 3600 + minute * 60 - 1 : local - second + previous;
+                continue;
+            }
+            return local;
+        }
+        throw new IllegalArgumentException("Previous time is not found after " + LocalDateTime.ofEpochSecond(limit, 0, ZoneOffset.UTC));
+    }
+
+    /**
+     * Compute the epoch day of the specified date. (days_from_civil algorithm by H. Hinnant)
+     * 
+     * @param year The year.
+     * @param month The month.
+     * @param day The day of month.
+     * @return The epoch day.
+     */
+    private static long epochDay(long year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = Math.floorDiv(year, 400);
+        int yoe = (int) (year - era * 400);
+        int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    /**
+     * Compute the length of the specified month.
+     * 
+     * @param year The year.
+     * @param month The month.
+     * @return The length of month.
+     */
+    private static int lengthOfMonth(long year, int month) {
+        return month == 2 ? ((year & 3) == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28) : 30 + ((month + month / 8) & 1);
     }
 
     /**
@@ -312,6 +1207,9 @@ public class Scheduler extends AbstractExecutorService implements ScheduledExecu
     @Override
     public void shutdown() {
         run = false;
+        for (Dispatcher dispatcher : dispatchers) {
+            dispatcher.wake();
+        }
     }
 
     /**
@@ -321,12 +1219,30 @@ public class Scheduler extends AbstractExecutorService implements ScheduledExecu
     public List<Runnable> shutdownNow() {
         run = false;
         for (Task run : runs) {
-            run.thread.interrupt();
+            // the thread of the deferred task may not be created yet
+            Thread thread = run.thread;
+            if (thread != null) {
+                thread.interrupt();
+            }
         }
 
-        DelayQueue temp = queue;
-        queue = new DelayQueue();
-        return new ArrayList(temp);
+        List<Runnable> cleared = new ArrayList();
+        for (Dispatcher dispatcher : dispatchers) {
+            dispatcher.clear(cleared);
+            dispatcher.wake();
+        }
+
+        // The trigger of cron group is internal, so it is expanded into the members which are
+        // waiting for it.
+        List<Runnable> remains = new ArrayList();
+        for (Runnable task : cleared) {
+            if (task instanceof Task trigger && trigger.triggering != null) {
+                trigger.triggering.waiting(remains);
+            } else {
+                remains.add(task);
+            }
+        }
+        return remains;
     }
 
     /**
@@ -358,7 +1274,7 @@ public class Scheduler extends AbstractExecutorService implements ScheduledExecu
      */
     @Override
     public boolean isTerminated() {
-        return !run && queue.isEmpty() && runs.isEmpty();
+        return !run && queued() == 0 && runs.isEmpty();
     }
 
     /**
@@ -366,7 +1282,14 @@ public class Scheduler extends AbstractExecutorService implements ScheduledExecu
      */
     @Override
     public void execute(Runnable command) {
-        schedule(command, 0, TimeUnit.MILLISECONDS);
+        // The task which is created by #newTaskFor for AbstractExecutorService#submit is executed
+        // as it is, and the other command is wrapped only once.
+        if (command instanceof Task task && task.next == Long.MIN_VALUE) {
+            task.next = System.currentTimeMillis();
+            executeTask(task);
+        } else {
+            executeTask(new Task(callable(command), System.currentTimeMillis(), null));
+        }
     }
 
     /**
@@ -374,7 +1297,8 @@ public class Scheduler extends AbstractExecutorService implements ScheduledExecu
      */
     @Override
     protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
-        return new Task(callable, 0, null);
+        // the unsubmitted task is marked by the minimum time, see #execute(Runnable)
+        return new Task(callable, Long.MIN_VALUE, null);
     }
 
     /**
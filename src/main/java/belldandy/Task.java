@@ -9,7 +9,9 @@
  */
 package belldandy;
 
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.ScheduledFuture;
@@ -27,6 +29,56 @@ class Task<V> extends FutureTask<V> implements ScheduledFuture<V> {
     /** The executing thread. */
     Thread thread;
 
+    /** The context class loader of the scheduling thread, which is used by the deferred thread. */
+    ClassLoader loader;
+
+    /**
+     * The dispatcher which is holding this task, or null if the task is not queued. It is written
+     * by the submitting thread and read by the cancelling thread, so it must be volatile. If the
+     * cancellation can't see the dispatcher yet, the cancelled state is already visible to the
+     * dispatcher thread which drops the task while draining the intake.
+     */
+    volatile Dispatcher dispatcher;
+
+    /** The bucket in the timing wheel. */
+    int slot = -1;
+
+    /** The position in the task queue or the bucket of timing wheel. */
+    int index = -1;
+
+    /** The cron group which triggers this task. */
+    CronGroup group;
+
+    /** The cron group which is triggered by this task, or null if this task is not the trigger. */
+    CronGroup triggering;
+
+    /** The flag whether the member of cron group is waiting or running since it is triggered. */
+    volatile boolean pending;
+
+    /** The policy for the missed executions. */
+    Misfire misfire = Misfire.FIRE_ALL;
+
+    /** The policy for the overlapped executions. */
+    Overlap overlap = Overlap.SERIAL;
+
+    /** The running executions, which are used only if the executions may overlap. */
+    Set<Task> instances;
+
+    /** The maximum jitter which is added to each execution time. (ms) */
+    long jitter;
+
+    /** The jitter which is added to the current next time. (ms) */
+    long offset;
+
+    /** The actual start time, which is recorded only for the events. (epoch ms) */
+    long start;
+
+    /** The time which the dispatcher has been blocked by the concurrency limit. (ns) */
+    long wait;
+
+    /** The original task. */
+    private final Callable<V> task;
+
     /**
      * Create new task.
      * 
@@ -37,6 +89,7 @@ class Task<V> extends FutureTask<V> implements ScheduledFuture<V> {
     Task(Callable<V> task, long next, LongUnaryOperator interval) {
         super(task);
 
+        this.task = task;
         this.next = next;
         this.interval = interval;
     }
@@ -55,6 +108,90 @@ class Task<V> extends FutureTask<V> implements ScheduledFuture<V> {
         }
     }
 
+    /**
+     * Set the policy for the overlapped executions.
+     * 
+     * @param overlap The policy.
+     */
+    void overlap(Overlap overlap) {
+        this.overlap = overlap;
+        if (overlap != Overlap.SERIAL) {
+            instances = ConcurrentHashMap.newKeySet();
+        }
+    }
+
+    /**
+     * Create the single execution of this periodic task, which runs concurrently with the other
+     * executions. It is registered as the running execution until it is done, and its failure
+     * stops this periodic task as same as the failure of the serial execution.
+     * 
+     * @return The execution.
+     */
+    Task<V> instance() {
+        Task<V> instance = new Task<>(task, System.currentTimeMillis(), null) {
+
+            @Override
+            protected void setException(Throwable t) {
+                super.setException(t);
+
+                // the interruption by the cancellation is not the failure
+                if (!isCancelled()) {
+                    Task.this.setException(t);
+                }
+            }
+
+            @Override
+            protected void done() {
+                Task.this.instances.remove(this);
+            }
+        };
+        instances.add(instance);
+        return instance;
+    }
+
+    /**
+     * Delay each execution of this task by the random jitter. The jitter is kept apart from the
+     * base time, so it is removed before the next base time is computed and never accumulates.
+     * 
+     * @param bound The maximum jitter. (ms)
+     */
+    void jitter(long bound) {
+        jitter = bound;
+        offset = Scheduler.jitter(bound);
+        next += offset;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+
+        Dispatcher dispatcher = this.dispatcher;
+        if (cancelled && dispatcher != null) {
+            dispatcher.cancel(this);
+        }
+
+        CronGroup group = this.group;
+        if (cancelled && group != null) {
+            group.leave(this);
+        }
+
+        if (cancelled) {
+            TaskEvent.Cancel event = new TaskEvent.Cancel();
+            if (event.isEnabled()) event.commit(this);
+        }
+
+        Set<Task> instances = this.instances;
+        if (cancelled && instances != null) {
+            for (Task instance : instances) {
+                instance.cancel(mayInterruptIfRunning);
+            }
+        }
+        return cancelled;
+    }
+
     /**
      * {@inheritDoc}
      */
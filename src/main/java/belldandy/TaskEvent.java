@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import jdk.jfr.Timestamp;
+
+/**
+ * The JFR events of the task lifecycle, which can be correlated with GC and thread pinning in the
+ * same recording. All events are disabled by default and must be enabled by the recording settings
+ * (e.g. {@code jfr configure +belldandy.Start#enabled=true}). The scheduler checks
+ * {@link #isEnabled()} of the new event before filling it, so the disabled event is never filled
+ * nor written, and its allocation is usually eliminated by the escape analysis.
+ */
+@Category({"Belldandy", "Scheduler"})
+@Enabled(false)
+@StackTrace(false)
+abstract class TaskEvent extends Event {
+
+    @Label("Task")
+    @Description("The identity hash code of task")
+    int task;
+
+    @Label("Next Time")
+    @Description("The time when the task should be executed")
+    @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+    long next;
+
+    @Label("Start Time")
+    @Description("The time when the task has actually started")
+    @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+    long start;
+
+    @Label("Permit Wait")
+    @Description("The time which the dispatcher has been blocked by the concurrency limit before the dispatch")
+    @Timespan(Timespan.NANOSECONDS)
+    long wait;
+
+    @Label("Run Duration")
+    @Description("The execution time of task")
+    @Timespan(Timespan.NANOSECONDS)
+    long duration;
+
+    /**
+     * Commit this event with the state of task which is not started yet.
+     * 
+     * @param task The target task.
+     */
+    final void commit(Task task) {
+        commit(task, 0);
+    }
+
+    /**
+     * Commit this event with the state of task.
+     * 
+     * @param task The target task.
+     * @param start The start time of the current execution, or 0 if it is not started yet. (epoch
+     *            ms)
+     */
+    final void commit(Task task, long start) {
+        this.task = System.identityHashCode(task);
+        this.next = task.next;
+        this.start = start;
+        this.wait = task.wait;
+        commit();
+    }
+
+    @Name("belldandy.Schedule")
+    @Label("Task Schedule")
+    @Description("The task is submitted to the scheduler")
+    static final class Schedule extends TaskEvent {
+    }
+
+    @Name("belldandy.Dispatch")
+    @Label("Task Dispatch")
+    @Description("The expired task is dispatched to its thread")
+    static final class Dispatch extends TaskEvent {
+    }
+
+    @Name("belldandy.Start")
+    @Label("Task Start")
+    @Description("The task starts on its thread")
+    static final class Start extends TaskEvent {
+    }
+
+    @Name("belldandy.End")
+    @Label("Task End")
+    @Description("The task is executed, the duration of event is the execution time")
+    static final class End extends TaskEvent {
+
+        @Label("Failed")
+        boolean failed;
+
+        /**
+         * Commit this event with the result of execution.
+         * 
+         * @param task The executed task.
+         * @param duration The execution time. (ns)
+         * @param failed The execution is failed or not.
+         */
+        void commit(Task task, long duration, boolean failed) {
+            this.duration = duration;
+            this.failed = failed;
+            end();
+            commit(task, task.start);
+        }
+    }
+
+    @Name("belldandy.Cancel")
+    @Label("Task Cancel")
+    @Description("The task is cancelled")
+    static final class Cancel extends TaskEvent {
+    }
+
+    @Name("belldandy.Reject")
+    @Label("Task Reject")
+    @Description("The task is rejected by the stopped scheduler")
+    static final class Reject extends TaskEvent {
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * The precise task queue which orders the tasks by their trigger time. It is not thread-safe, see
+ * {@link TaskQueue}.
+ * <p>
+ * This is the 4-ary min-heap in which each task remembers its own position, so the arbitrary task
+ * can be removed or reordered in O(log n) without searching. The trigger time of each task is
+ * copied into the primitive array when it is inserted, so the ordering is never broken even if
+ * the trigger time of the task is changed by another thread before the heap is notified.
+ * </p>
+ */
+class TaskHeap implements TaskQueue {
+
+    /** The initial capacity. */
+    private static final int INITIAL = 16;
+
+    /** The tasks. */
+    private Task[] tasks = new Task[INITIAL];
+
+    /** The trigger time of each task. (epoch ms) */
+    private long[] keys = new long[INITIAL];
+
+    /** The number of tasks. */
+    private int size;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add(Task task) {
+        if (size == tasks.length) {
+            resize(size << 1);
+        }
+        siftUp(size++, task, task.next);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (o instanceof Task task && contains(task)) {
+            removeAt(task.index);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean update(Task task) {
+        if (!contains(task)) {
+            return false;
+        }
+
+        int index = task.index;
+        long key = task.next;
+        if (key < keys[index]) {
+            siftUp(index, task, key);
+        } else if (keys[index] < key) {
+            siftDown(index, task, key);
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int purge() {
+        int live = 0;
+        for (int i = 0; i < size; i++) {
+            Task task = tasks[i];
+            if (task.isCancelled()) {
+                task.index = -1;
+            } else {
+                place(live++, task, keys[i]);
+            }
+        }
+        Arrays.fill(tasks, live, size, null);
+
+        int removed = size - live;
+        size = live;
+
+        // rebuild the heap order from the last parent in O(n)
+        for (int i = (size - 2) >> 2; 0 <= i; i--) {
+            siftDown(i, tasks[i], keys[i]);
+        }
+
+        // release the unused memory
+        int capacity = tasks.length;
+        while (INITIAL < capacity && size < capacity >> 2) {
+            capacity >>= 1;
+        }
+        if (capacity != tasks.length) {
+            resize(capacity);
+        }
+        return removed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Task poll(long now) {
+        while (size != 0 && keys[0] <= now) {
+            Task task = tasks[0];
+
+            // The trigger time was changed but the heap has not been notified yet.
+            if (task.next != keys[0]) {
+                siftDown(0, task, task.next);
+                continue;
+            }
+
+            removeAt(0);
+            return task;
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long next() {
+        return size == 0 ? Long.MAX_VALUE : keys[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            tasks[i].index = -1;
+        }
+        tasks = new Task[INITIAL];
+        keys = new long[INITIAL];
+        size = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<Task> iterator() {
+        return Arrays.asList(tasks).subList(0, size).iterator();
+    }
+
+    /**
+     * Check whether the given task is in this heap.
+     * 
+     * @param task A task to check.
+     * @return true if the task is in this heap.
+     */
+    private boolean contains(Task task) {
+        int index = task.index;
+        return 0 <= index && index < size && tasks[index] == task;
+    }
+
+    /**
+     * Remove the task at the specified position.
+     * 
+     * @param index The position of task.
+     */
+    private void removeAt(int index) {
+        tasks[index].index = -1;
+
+        int last = --size;
+        Task moved = tasks[last];
+        long key = keys[last];
+        tasks[last] = null;
+
+        if (index != last) {
+            siftDown(index, moved, key);
+            if (tasks[index] == moved) {
+                siftUp(index, moved, key);
+            }
+        }
+
+        // release the unused memory after the bulk removal
+        if (INITIAL < tasks.length && size < tasks.length >> 2) {
+            resize(tasks.length >> 1);
+        }
+    }
+
+    /**
+     * Move the task toward the root until the heap order is satisfied.
+     * 
+     * @param index The starting position.
+     * @param task A task to move.
+     * @param key The trigger time of task.
+     */
+    private void siftUp(int index, Task task, long key) {
+        while (0 < index) {
+            int parent = (index - 1) >>> 2;
+            if (keys[parent] <= key) {
+                break;
+            }
+            place(index, tasks[parent], keys[parent]);
+            index = parent;
+        }
+        place(index, task, key);
+    }
+
+    /**
+     * Move the task toward the leaves until the heap order is satisfied.
+     * 
+     * @param index The starting position.
+     * @param task A task to move.
+     * @param key The trigger time of task.
+     */
+    private void siftDown(int index, Task task, long key) {
+        while (true) {
+            int child = (index << 2) + 1;
+            if (size <= child) {
+                break;
+            }
+
+            // find the earliest child
+            int min = child;
+            int end = Math.min(child + 4, size);
+            for (int i = child + 1; i < end; i++) {
+                if (keys[i] < keys[min]) {
+                    min = i;
+                }
+            }
+
+            if (key <= keys[min]) {
+                break;
+            }
+            place(index, tasks[min], keys[min]);
+            index = min;
+        }
+        place(index, task, key);
+    }
+
+    /**
+     * Put the task at the specified position.
+     * 
+     * @param index The position.
+     * @param task A task to put.
+     * @param key The trigger time of task.
+     */
+    private void place(int index, Task task, long key) {
+        tasks[index] = task;
+        keys[index] = key;
+        task.index = index;
+    }
+
+    /**
+     * Change the capacity.
+     * 
+     * @param capacity The new capacity.
+     */
+    private void resize(int capacity) {
+        tasks = Arrays.copyOf(tasks, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+    }
+}
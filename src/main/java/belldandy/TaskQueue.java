@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+/**
+ * The ordered structure of the waiting tasks. It is not thread-safe and is accessed only by the
+ * dispatcher which owns it.
+ */
+interface TaskQueue extends Iterable<Task> {
+
+    /**
+     * Add the task.
+     * 
+     * @param task A task to add.
+     * @return Always true.
+     */
+    boolean add(Task task);
+
+    /**
+     * Remove the task.
+     * 
+     * @param task A task to remove.
+     * @return true if the task was removed.
+     */
+    boolean remove(Object task);
+
+    /**
+     * Reorder the task whose trigger time has been changed.
+     * 
+     * @param task A task to reorder.
+     * @return true if the task was reordered, false if the task is not in this queue.
+     */
+    boolean update(Task task);
+
+    /**
+     * Removes all cancelled tasks at once in O(n). This is faster than removing them one by one
+     * when many tasks are cancelled in bulk.
+     * 
+     * @return The number of removed tasks.
+     */
+    int purge();
+
+    /**
+     * Retrieves and removes the expired task. The task whose trigger time has been changed but is
+     * not reordered yet must not be retrieved before the new trigger time.
+     * 
+     * @param now The current time. (epoch ms)
+     * @return The expired task or null.
+     */
+    Task poll(long now);
+
+    /**
+     * Compute the time when the next task can be expired.
+     * 
+     * @return The next time (epoch ms) or {@link Long#MAX_VALUE} if this queue is empty.
+     */
+    long next();
+
+    /**
+     * Count the number of tasks.
+     * 
+     * @return The number of tasks.
+     */
+    int size();
+
+    /**
+     * Removes all tasks.
+     */
+    void clear();
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free bounded ring buffer which accepts the tasks from multiple producers and is drained by
+ * the single consumer. The tasks which overflow the ring are kept in the lock-free unbounded queue.
+ */
+class TaskRing {
+
+    /** The task slots. */
+    private final AtomicReferenceArray<Task> slots;
+
+    /** The mask to compute the slot index. */
+    private final int mask;
+
+    /** The sequence of the next producer. */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** The sequence of the consumer. */
+    private volatile long head;
+
+    /** The unbounded overflow which is used only while the ring is full. */
+    private final ConcurrentLinkedQueue<Task> overflow = new ConcurrentLinkedQueue();
+
+    /**
+     * Create new ring.
+     * 
+     * @param capacity The capacity of ring, it must be power of 2.
+     */
+    TaskRing(int capacity) {
+        this.slots = new AtomicReferenceArray(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Insert the task into the ring or the overflow without blocking. This method can be called
+     * from any thread.
+     * 
+     * @param task A task to insert.
+     */
+    void add(Task task) {
+        if (!offer(task)) {
+            overflow.offer(task);
+        }
+    }
+
+    /**
+     * Insert the task into the ring without blocking. This method can be called from any thread.
+     * 
+     * @param task A task to insert.
+     * @return false if the ring is full.
+     */
+    boolean offer(Task task) {
+        while (true) {
+            long sequence = tail.get();
+            if (mask < sequence - head) {
+                return false;
+            }
+
+            if (tail.compareAndSet(sequence, sequence + 1)) {
+                slots.setRelease((int) sequence & mask, task);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Retrieves and removes the head task. This method must be called by the single consumer.
+     * 
+     * @return The head task, or null if the ring is empty or the head task is not published yet.
+     */
+    Task poll() {
+        long sequence = head;
+        int index = (int) sequence & mask;
+        Task task = slots.getAcquire(index);
+        if (task != null) {
+            slots.setPlain(index, null);
+            head = sequence + 1;
+            return task;
+        }
+        return overflow.poll();
+    }
+
+    /**
+     * Check whether the ring has any task which is claimed by producer.
+     * 
+     * @return true if the ring is empty.
+     */
+    boolean isEmpty() {
+        return tail.get() == head && overflow.isEmpty();
+    }
+
+    /**
+     * Count the number of tasks which are claimed by producers.
+     * 
+     * @return The number of tasks.
+     */
+    int size() {
+        return (int) (tail.get() - head) + overflow.size();
+    }
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hashed hierarchical timing wheel which can be used as the task queue of {@link Scheduler}. It is
+ * not thread-safe, see {@link TaskQueue}.
+ * <p>
+ * The time axis is divided into ticks of the fixed length, and each task is hashed into the slot
+ * of the level which is determined by the most significant 6-bit digit where its trigger tick
+ * differs from the current tick. Since every level has only 64 slots, the occupied slots are
+ * managed by a single {@code long} bitmap and the next event can be found by one bit scan per
+ * level. Insertion and removal are O(1), and the task is cascaded into the lower level when the
+ * wheel reaches the boundary of its slot.
+ * </p>
+ * <p>
+ * Unlike {@link java.util.concurrent.DelayQueue}, the tasks in the same tick are not ordered and
+ * are retrieved in no particular order. The task is never retrieved before its trigger time, but
+ * it may be delayed up to one tick.
+ * </p>
+ */
+class TimingWheel implements TaskQueue {
+
+    /** The bit size of the slot index on each level. */
+    private static final int BITS = 6;
+
+    /** The number of slots on each level. */
+    private static final int SLOTS = 1 << BITS;
+
+    /** The number of levels, which can cover the whole range of long value. */
+    private static final int LEVELS = (Long.SIZE + BITS - 1) / BITS;
+
+    /** The special slot number which indicates the task is expired. */
+    private static final int EXPIRED = -2;
+
+    /** The length of one tick. (ms) */
+    private final long tick;
+
+    /** The task buckets. (level * SLOTS + slot) */
+    private final Task[][] buckets = new Task[LEVELS * SLOTS][];
+
+    /** The number of tasks in each bucket. */
+    private final int[] sizes = new int[LEVELS * SLOTS];
+
+    /** The bitmap of the occupied slots on each level. */
+    private final long[] occupied = new long[LEVELS];
+
+    /** The expired tasks which are waiting to be retrieved. */
+    private final ArrayDeque<Task> expired = new ArrayDeque();
+
+    /** The first tick which is not processed yet. */
+    private long current;
+
+    /** The number of tasks. */
+    private int size;
+
+    /**
+     * Create new timing wheel.
+     *
+     * @param tick The length of one tick. (ms)
+     */
+    TimingWheel(long tick) {
+        if (tick <= 0) {
+            throw new IllegalArgumentException("Tick must be positive.");
+        }
+        this.tick = tick;
+        this.current = Math.floorDiv(System.currentTimeMillis(), tick);
+    }
+
+    /**
+     * Hash the given task into the suitable bucket.
+     *
+     * @param task A task to insert.
+     */
+    private void insert(Task task) {
+        long due = Math.max(Math.ceilDiv(task.next, tick), current);
+        int level = (63 - Long.numberOfLeadingZeros(due ^ current)) / BITS;
+        int slot = (int) (due >>> level * BITS) & (SLOTS - 1);
+        int bucket = level * SLOTS + slot;
+
+        Task[] tasks = buckets[bucket];
+        int index = sizes[bucket]++;
+        if (tasks == null) {
+            buckets[bucket] = tasks = new Task[4];
+        } else if (index == tasks.length) {
+            buckets[bucket] = tasks = Arrays.copyOf(tasks, index << 1);
+        }
+        tasks[index] = task;
+        task.index = index;
+        task.slot = bucket;
+        occupied[level] |= 1L << slot;
+    }
+
+    /**
+     * Unlink the given task from its bucket.
+     *
+     * @param task A task to remove.
+     */
+    private void unlink(Task task) {
+        int bucket = task.slot;
+        Task[] tasks = buckets[bucket];
+        int last = --sizes[bucket];
+
+        // fill the hole by the last task
+        Task moved = tasks[last];
+        tasks[last] = null;
+        if (moved != task) {
+            tasks[task.index] = moved;
+            moved.index = task.index;
+        }
+
+        if (last == 0) {
+            buckets[bucket] = null;
+            occupied[bucket / SLOTS] &= ~(1L << (bucket & (SLOTS - 1)));
+        }
+        task.index = -1;
+        task.slot = -1;
+    }
+
+    /**
+     * Detach all tasks from the specified bucket.
+     *
+     * @param level The level of bucket.
+     * @param slot The slot of bucket.
+     * @return The detached tasks, or null if the bucket is empty.
+     */
+    private Task[] detach(int level, int slot) {
+        if ((occupied[level] & 1L << slot) == 0) {
+            return null;
+        }
+
+        int bucket = level * SLOTS + slot;
+        Task[] tasks = buckets[bucket];
+        buckets[bucket] = null;
+        sizes[bucket] = 0;
+        occupied[level] &= ~(1L << slot);
+        return tasks;
+    }
+
+    /**
+     * Compute the next tick when any bucket should be processed.
+     *
+     * @return The next event tick or {@link Long#MAX_VALUE} if the wheel is empty.
+     */
+    private long nextEvent() {
+        // The lowest occupied level always has the earliest event, because all slots on the level
+        // are before the boundary of the current slot of the upper level.
+        for (int level = 0; level < LEVELS; level++) {
+            long mask = occupied[level];
+            if (mask != 0) {
+                int shift = level * BITS;
+                int upper = shift + BITS;
+                long base = upper >= Long.SIZE ? 0 : current >>> upper << upper;
+                return base | (long) Long.numberOfTrailingZeros(mask) << shift;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Advance the wheel up to the specified tick and move all due tasks to the expired list.
+     *
+     * @param now The current tick.
+     */
+    private void advance(long now) {
+        while (true) {
+            long event = nextEvent();
+            if (now < event) {
+                // Skip the empty ticks at once. The current tick is not processed yet, so the task
+                // which is inserted later at the same tick can be handled correctly.
+                if (current < now) current = now;
+                return;
+            }
+            current = event;
+
+            // cascade the upper buckets which reach the boundary
+            for (int level = LEVELS - 1; 0 < level; level--) {
+                int shift = level * BITS;
+                if ((current & (1L << shift) - 1) == 0) {
+                    int slot = (int) (current >>> shift) & (SLOTS - 1);
+                    Task[] tasks = detach(level, slot);
+                    if (tasks != null) {
+                        for (int i = 0; i < tasks.length && tasks[i] != null; i++) {
+                            insert(tasks[i]);
+                        }
+                    }
+                }
+            }
+
+            // expire the current bucket
+            Task[] tasks = detach(0, (int) current & (SLOTS - 1));
+            if (tasks != null) {
+                for (int i = 0; i < tasks.length && tasks[i] != null; i++) {
+                    Task task = tasks[i];
+                    task.index = -1;
+                    task.slot = EXPIRED;
+                    expired.add(task);
+                }
+            }
+            current++;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add(Task task) {
+        insert(task);
+        size++;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean update(Task task) {
+        if (remove(task)) {
+            return add(task);
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int purge() {
+        int removed = 0;
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            int count = sizes[bucket];
+            if (count != 0) {
+                Task[] tasks = buckets[bucket];
+                int live = 0;
+                for (int i = 0; i < count; i++) {
+                    Task task = tasks[i];
+                    if (task.isCancelled()) {
+                        task.index = -1;
+                        task.slot = -1;
+                    } else {
+                        tasks[live] = task;
+                        task.index = live++;
+                    }
+                }
+
+                if (live == 0) {
+                    buckets[bucket] = null;
+                    occupied[bucket / SLOTS] &= ~(1L << (bucket & (SLOTS - 1)));
+                } else if (live < tasks.length >> 2) {
+                    // release the unused memory
+                    buckets[bucket] = Arrays.copyOf(tasks, Math.max(4, live << 1));
+                } else {
+                    Arrays.fill(tasks, live, count, null);
+                }
+                sizes[bucket] = live;
+                removed += count - live;
+            }
+        }
+
+        int remains = expired.size();
+        expired.removeIf(task -> {
+            if (task.isCancelled()) {
+                task.slot = -1;
+                return true;
+            }
+            return false;
+        });
+        removed += remains - expired.size();
+
+        size -= removed;
+        return removed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Task poll(long now) {
+        while (true) {
+            advance(Math.floorDiv(now, tick));
+
+            Task task = expired.poll();
+            if (task == null) {
+                return null;
+            }
+
+            task.slot = -1;
+            if (task.next <= now) {
+                size--;
+                return task;
+            }
+
+            // The trigger time was changed but the wheel has not been notified yet.
+            insert(task);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long next() {
+        if (!expired.isEmpty()) {
+            return Long.MIN_VALUE;
+        }
+
+        long event = nextEvent();
+        return event >= Long.MAX_VALUE / tick ? Long.MAX_VALUE : event * tick;
+    }
+
+    /**
+     * Removes the given task in O(1) if it is not expired yet.
+     *
+     * @param o A task to remove.
+     * @return true if the task was removed.
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (o instanceof Task task) {
+            int bucket = task.slot;
+            if (bucket == EXPIRED) {
+                if (expired.remove(task)) {
+                    task.slot = -1;
+                    size--;
+                    return true;
+                }
+            } else if (0 <= bucket && task.index < sizes[bucket] && buckets[bucket][task.index] == task) {
+                unlink(task);
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        for (Task task : snapshot()) {
+            task.index = -1;
+            task.slot = -1;
+        }
+        Arrays.fill(buckets, null);
+        Arrays.fill(sizes, 0);
+        Arrays.fill(occupied, 0);
+        expired.clear();
+        size = 0;
+    }
+
+    /**
+     * Returns an iterator over the snapshot of all tasks in this wheel. The iterator does not
+     * return the tasks in any particular order.
+     *
+     * @return An iterator over the tasks.
+     */
+    @Override
+    public Iterator<Task> iterator() {
+        return snapshot().iterator();
+    }
+
+    /**
+     * Collect all tasks in this wheel.
+     *
+     * @return All tasks.
+     */
+    private List<Task> snapshot() {
+        List<Task> list = new ArrayList(expired);
+        for (int i = 0; i < buckets.length; i++) {
+            for (int j = 0; j < sizes[i]; j++) {
+                list.add(buckets[i][j]);
+            }
+        }
+        return list;
+    }
+}
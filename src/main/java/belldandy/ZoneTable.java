@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The cached offset transitions of the time zone. The transitions in the supported range are
+ * expanded into the primitive arrays once per zone, so the conversion between the instant and the
+ * local time is a binary search without any allocation or {@link ZoneRules} lookup.
+ * <p>
+ * The local time which is skipped by the gap is resolved to the end of the gap, and the local time
+ * which is repeated by the overlap is resolved to its first occurrence.
+ * </p>
+ */
+class ZoneTable {
+
+    /** The start of supported range. (1900-01-01T00:00:00Z) */
+    private static final long MIN = -2208988800L;
+
+    /** The end of supported range. (2200-01-01T00:00:00Z) */
+    private static final long MAX = 7258118400L;
+
+    /** The cached tables. */
+    private static final ConcurrentHashMap<ZoneId, ZoneTable> CACHE = new ConcurrentHashMap();
+
+    /** The zone rules, which is used only outside the supported range. */
+    private final ZoneRules rules;
+
+    /** The instants of transitions. (epoch seconds) */
+    private final long[] instants;
+
+    /** The offsets in seconds, [i] is the offset before the i-th transition and [i + 1] is after. */
+    private final int[] offsets;
+
+    /**
+     * Expand the transitions of the zone.
+     *
+     * @param zone The time zone.
+     */
+    private ZoneTable(ZoneId zone) {
+        this.rules = zone.getRules();
+
+        long[] instants = new long[16];
+        int[] offsets = new int[17];
+        int size = 0;
+
+        offsets[0] = rules.getOffset(Instant.ofEpochSecond(MIN)).getTotalSeconds();
+        ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochSecond(MIN));
+        while (transition != null && transition.toEpochSecond() < MAX) {
+            if (size == instants.length) {
+                instants = Arrays.copyOf(instants, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2 + 1);
+            }
+            instants[size] = transition.toEpochSecond();
+            offsets[++size] = transition.getOffsetAfter().getTotalSeconds();
+            transition = rules.nextTransition(transition.getInstant());
+        }
+
+        this.instants = Arrays.copyOf(instants, size);
+        this.offsets = Arrays.copyOf(offsets, size + 1);
+    }
+
+    /**
+     * Returns the cached table of the zone.
+     *
+     * @param zone The time zone.
+     * @return The table.
+     */
+    static ZoneTable of(ZoneId zone) {
+        ZoneTable table = CACHE.get(zone);
+        if (table == null) {
+            table = CACHE.computeIfAbsent(zone, ZoneTable::new);
+        }
+        return table;
+    }
+
+    /**
+     * Find the last transition which is equal to or before the instant.
+     *
+     * @param epochSecond The instant. (epoch seconds)
+     * @return The index of transition, or -1 if there is no transition before it.
+     */
+    private int floor(long epochSecond) {
+        int low = 0;
+        int high = instants.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (instants[mid] <= epochSecond) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * Compute the offset of the specified instant.
+     *
+     * @param epochSecond The instant. (epoch seconds)
+     * @return The total offset in seconds.
+     */
+    int offset(long epochSecond) {
+        if (epochSecond < MIN || MAX <= epochSecond) {
+            return rules.getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds();
+        }
+        return offsets[floor(epochSecond) + 1];
+    }
+
+    /**
+     * Compute the latest local time of the instants which are equal to or before the specified
+     * instant. It is later than the local time of the instant itself within the overlap, since the
+     * first occurrence of the repeated local times has the larger offset.
+     *
+     * @param epochSecond The instant. (epoch seconds)
+     * @return The latest local time. (local epoch seconds)
+     */
+    long floorLocal(long epochSecond) {
+        if (epochSecond < MIN || MAX <= epochSecond) {
+            long local = epochSecond + offset(epochSecond);
+            ZoneOffsetTransition transition = rules.previousTransition(Instant.ofEpochSecond(epochSecond + 1));
+            if (transition != null && transition.isOverlap()) {
+                local = Math.max(local, transition.toEpochSecond() - 1 + transition.getOffsetBefore().getTotalSeconds());
+            }
+            return local;
+        }
+
+        int i = floor(epochSecond);
+        long local = epochSecond + offsets[i + 1];
+        if (i != -1 && offsets[i + 1] < offsets[i]) {
+            local = Math.max(local, instants[i] - 1 + offsets[i]);
+        }
+        return local;
+    }
+
+    /**
+     * Resolve the local time to the earliest instant whose local time is equal to or after it. So
+     * the local time in the gap is resolved to the end of gap, and the local time in the overlap is
+     * resolved to its first occurrence.
+     *
+     * @param local The local time. (local epoch seconds)
+     * @return The resolved instant. (epoch seconds)
+     */
+    long resolve(long local) {
+        if (local < MIN + 86400 || MAX - 86400 <= local) {
+            LocalDateTime time = LocalDateTime.ofEpochSecond(local, 0, ZoneOffset.UTC);
+            ZoneOffsetTransition transition = rules.getTransition(time);
+            if (transition == null) {
+                return local - rules.getOffset(time).getTotalSeconds();
+            } else if (transition.isGap()) {
+                return transition.toEpochSecond();
+            } else {
+                return local - transition.getOffsetBefore().getTotalSeconds();
+            }
+        }
+
+        // find the last transition whose earlier local time is equal to or before the local time
+        int low = 0;
+        int high = instants.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (instants[mid] + Math.min(offsets[mid], offsets[mid + 1]) <= local) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        int i = low - 1;
+        if (i == -1) {
+            return local - offsets[0];
+        }
+
+        int before = offsets[i];
+        int after = offsets[i + 1];
+        if (local < instants[i] + Math.max(before, after)) {
+            // within the gap or the overlap
+            return before < after ? instants[i] : local - before;
+        }
+        return local - after;
+    }
+}
@@ -26,6 +26,8 @@ public class Project extends bee.api.Project {
         require(SourceVersion.RELEASE_21);
         require("com.github.teletha", "sinobu");
         require("com.github.teletha", "antibug").atTest();
+        require("org.openjdk.jmh", "jmh-core").atTest();
+        require("org.openjdk.jmh", "jmh-generator-annprocess").atTest();
 
         versionControlSystem("https://github.com/teletha/belldandy");
     }
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class CronExpressionTest {
+
+    @Test
+    void canonical() {
+        CronExpression cron = CronExpression.of("0 */5 * * *");
+        assert cron == CronExpression.of("0 */5 * * *");
+        assert cron == CronExpression.of("  0   */5 * * *  ");
+        assert cron == CronExpression.of("0 0 */5 * * *");
+        assert cron.fields == CronExpression.of("0\t*/5 * * *").fields;
+    }
+
+    @Test
+    void normalized() {
+        assert CronExpression.of(" 1  2 3 * * ").toString().equals("0 1 2 3 * *");
+        assert CronExpression.of("10 1 2 3 * *").toString().equals("10 1 2 3 * *");
+    }
+
+    @Test
+    void equality() {
+        assert CronExpression.of("* * * * *").equals(CronExpression.of("0 * * * * *"));
+        assert CronExpression.of("* * * * *").hashCode() == CronExpression.of("0 * * * * *").hashCode();
+        assert !CronExpression.of("* * * * *").equals(CronExpression.of("* * * * * *"));
+    }
+
+    @Test
+    void hashed() {
+        CronExpression cron = CronExpression.of("H H * * *", "backup");
+        assert cron == CronExpression.of("H H * * *", "backup");
+        assert cron == CronExpression.of(cron.toString());
+        assert cron.toString().matches("0 \\d{1,2} \\d{1,2} \\* \\* \\*") : cron;
+    }
+
+    @Test
+    void hashedWithoutH() {
+        assert CronExpression.of("0 12 * * THU", "key") == CronExpression.of("0 12 * * THU");
+    }
+
+    @Test
+    void hashedSpread() {
+        Set<String> minutes = new HashSet();
+        for (int i = 0; i < 1000; i++) {
+            String[] fields = CronExpression.of("H H(9-17) H * *", "task" + i).toString().split(" ");
+            int minute = Integer.parseInt(fields[1]);
+            int hour = Integer.parseInt(fields[2]);
+            int day = Integer.parseInt(fields[3]);
+            assert 0 <= minute && minute <= 59;
+            assert 9 <= hour && hour <= 17;
+            assert 1 <= day && day <= 28;
+            minutes.add(fields[1]);
+        }
+        assert minutes.size() == 60;
+    }
+
+    @Test
+    void hashedStep() {
+        for (int i = 0; i < 100; i++) {
+            String[] fields = CronExpression.of("H/15 * * * *", "task" + i).toString().split(" ");
+            int start = Integer.parseInt(fields[1].substring(0, fields[1].indexOf('-')));
+            assert start < 15;
+            assert fields[1].equals(start + "-59/15");
+        }
+        assert CronExpression.of("H(10-20)/5 * * * *", "task").toString().matches("0 1\\d-20/5 \\* \\* \\* \\*");
+    }
+
+    @Test
+    void hashedList() {
+        String[] fields = CronExpression.of("H,30 * * * *", "task").toString().split(" ");
+        assert fields[1].endsWith(",30");
+    }
+
+    @Test
+    void hashedInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.of("H(20-10) * * * *", "task"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.of("H(10-70) * * * *", "task"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.of("H/0 * * * *", "task"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.of("H(1-2 * * * *", "task"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.of("HX * * * *", "task"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.of("H * * *", "task"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.of("H * * * *"));
+    }
+
+    @Test
+    void next() {
+        ZoneId zone = ZoneId.of("UTC");
+        CronExpression cron = CronExpression.of("0 12 * * *");
+        assert cron.next(ZonedDateTime.of(2024, 10, 2, 11, 0, 0, 0, zone)).equals(ZonedDateTime.of(2024, 10, 2, 12, 0, 0, 0, zone));
+        assert cron.next(ZonedDateTime.of(2024, 10, 2, 12, 0, 0, 0, zone)).equals(ZonedDateTime.of(2024, 10, 3, 12, 0, 0, 0, zone));
+    }
+
+    @Test
+    void previous() {
+        ZoneId zone = ZoneId.of("UTC");
+        CronExpression cron = CronExpression.of("0 12 * * *");
+        assert cron.previous(ZonedDateTime.of(2024, 10, 2, 13, 0, 0, 0, zone)).equals(ZonedDateTime.of(2024, 10, 2, 12, 0, 0, 0, zone));
+        assert cron.previous(ZonedDateTime.of(2024, 10, 2, 12, 0, 0, 0, zone)).equals(ZonedDateTime.of(2024, 10, 1, 12, 0, 0, 0, zone));
+    }
+
+    @Test
+    void stream() {
+        ZoneId zone = ZoneId.of("UTC");
+        List<ZonedDateTime> times = CronExpression.of("0 0 L * ?").stream(ZonedDateTime.of(2024, 1, 15, 0, 0, 0, 0, zone)).limit(3).toList();
+        assert times.size() == 3;
+        assert times.get(0).equals(ZonedDateTime.of(2024, 1, 31, 0, 0, 0, 0, zone));
+        assert times.get(1).equals(ZonedDateTime.of(2024, 2, 29, 0, 0, 0, 0, zone));
+        assert times.get(2).equals(ZonedDateTime.of(2024, 3, 31, 0, 0, 0, 0, zone));
+    }
+
+    @Test
+    void streamIsSameAsNext() {
+        for (String zone : new String[] {"UTC", "Europe/Berlin", "America/New_York", "Australia/Lord_Howe"}) {
+            for (String expression : new String[] {"*/7 * * * * *", "30 2 * * *", "0 0 ? * 5L", "15,45 */2 1-10 * MON-FRI"}) {
+                CronExpression cron = CronExpression.of(expression);
+                ZonedDateTime base = ZonedDateTime.of(2024, 3, 1, 0, 0, 0, 0, ZoneId.of(zone));
+
+                ZonedDateTime next = base;
+                for (ZonedDateTime time : cron.stream(base).limit(500).toList()) {
+                    next = cron.next(next);
+                    assert time.equals(next) : zone + " " + expression + " " + time + " " + next;
+                }
+            }
+        }
+    }
+
+    @Test
+    void streamGap() {
+        // every second in the skipped hour is resolved to the end of gap only once
+        ZoneId zone = ZoneId.of("Europe/Berlin");
+        List<ZonedDateTime> times = CronExpression.of("* * 2 31 3 *").stream(ZonedDateTime.of(2024, 3, 31, 1, 59, 58, 0, zone)).limit(2).toList();
+        assert times.get(0).toLocalDateTime().toString().equals("2024-03-31T03:00");
+        assert times.get(1).toLocalDateTime().toString().equals("2025-03-31T02:00");
+    }
+
+    @Test
+    void streamEnds() {
+        assert CronExpression.of("0 0 29 2 MON").stream(ZonedDateTime.of(2024, 3, 1, 0, 0, 0, 0, ZoneId.of("UTC"))).count() == 0;
+    }
+
+    @Test
+    void nextN() {
+        ZoneId zone = ZoneId.of("UTC");
+        CronExpression cron = CronExpression.of("0 12 * * *");
+        ZonedDateTime base = ZonedDateTime.of(2024, 10, 2, 12, 0, 0, 0, zone);
+
+        long[] times = cron.nextN(base, 1000);
+        assert times.length == 1000;
+        for (int i = 0; i < times.length; i++) {
+            assert times[i] == base.plusDays(i + 1).toInstant().toEpochMilli();
+        }
+    }
+
+    @Test
+    void nextNFill() {
+        long[] times = new long[5];
+        assert CronExpression.of("0 0 1 1 *").nextN(ZonedDateTime.of(2024, 10, 2, 0, 0, 0, 0, ZoneId.of("UTC")), times) == 5;
+        assert times[4] == ZonedDateTime.of(2029, 1, 1, 0, 0, 0, 0, ZoneId.of("UTC")).toInstant().toEpochMilli();
+    }
+
+    @Test
+    void invalid() {
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.of("* * * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.of("60 * * * *"));
+        assertThrows(NullPointerException.class, () -> CronExpression.of(null));
+    }
+
+    @Test
+    void bounded() {
+        List<CronExpression> compiled = new ArrayList();
+        for (int i = 0; i < 3000; i++) {
+            compiled.add(CronExpression.of(i % 60 + " " + i / 60 % 24 + " " + (i / 1440 + 1) + " * *"));
+        }
+        assert CronExpression.CACHE.size() <= CronExpression.CACHE_SIZE;
+
+        // the evicted expression is compiled again into the equal instance
+        CronExpression evicted = compiled.stream().filter(cron -> !CronExpression.CACHE.containsKey(cron.toString())).findFirst().get();
+        CronExpression recompiled = CronExpression.of(evicted.toString());
+        assert recompiled.equals(evicted);
+        assert recompiled.hashCode() == evicted.hashCode();
+        assert CronExpression.of(evicted.toString()) == recompiled;
+
+        assert CronExpression.of("0 */5 * * *").next(ZonedDateTime.now()) != null;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the hand-written cron field parser with the former regular expression based one. The
+ * expression is split into fields beforehand, and both sides construct the same six fields from
+ * them. The former side is the verbatim copy of its field constructor. The hand-written side also
+ * compiles the masks and the day tables, which the former parser deferred to each match, but the
+ * satisfiability check of the whole expression is excluded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CronParseBench {
+
+    @Param({"0 */5 * * *", "0 30 9-17 ? JAN-MAR,OCT MON-FRI", "15,45 0 0 LW * ?", "0 0 12 ? * FRI#3"})
+    public String expression;
+
+    /** The fields of expression, the seconds field is supplemented. */
+    private String[] parts;
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(CronParseBench.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setup() {
+        String[] parts = expression.strip().split("\\s+");
+        if (parts.length == 5) {
+            String[] supplemented = new String[6];
+            supplemented[0] = "0";
+            System.arraycopy(parts, 0, supplemented, 1, 5);
+            parts = supplemented;
+        }
+        this.parts = parts;
+    }
+
+    @Benchmark
+    public Cron[] handwritten() {
+        return new Cron[] {new Cron(ChronoField.SECOND_OF_MINUTE, 0, 59, "", "", "/", parts[0]),
+                new Cron(ChronoField.MINUTE_OF_HOUR, 0, 59, "", "", "/", parts[1]),
+                new Cron(ChronoField.HOUR_OF_DAY, 0, 23, "", "", "/", parts[2]),
+                new Cron(ChronoField.DAY_OF_MONTH, 1, 31, "", "?LW", "/", parts[3]),
+                new Cron(ChronoField.MONTH_OF_YEAR, 1, 12, "JAN FEB MAR APR MAY JUN JUL AUG SEP OCT NOV DEC ", "", "/", parts[4]),
+                new Cron(ChronoField.DAY_OF_WEEK, 1, 7, "MON TUE WED THU FRI SAT SUN ", "?L", "#/", parts[5])};
+    }
+
+    @Benchmark
+    public RegexCron[] regex() {
+        return new RegexCron[] {new RegexCron(ChronoField.SECOND_OF_MINUTE, 0, 59, "", "", "/", parts[0]),
+                new RegexCron(ChronoField.MINUTE_OF_HOUR, 0, 59, "", "", "/", parts[1]),
+                new RegexCron(ChronoField.HOUR_OF_DAY, 0, 23, "", "", "/", parts[2]),
+                new RegexCron(ChronoField.DAY_OF_MONTH, 1, 31, "", "?LW", "/", parts[3]),
+                new RegexCron(ChronoField.MONTH_OF_YEAR, 1, 12, "JAN FEB MAR APR MAY JUN JUL AUG SEP OCT NOV DEC ", "", "/", parts[4]),
+                new RegexCron(ChronoField.DAY_OF_WEEK, 1, 7, "MON TUE WED THU FRI SAT SUN ", "?L", "#/", parts[5])};
+    }
+
+    /**
+     * The verbatim copy of the former regular expression based field parser.
+     */
+    public static class RegexCron {
+        private static final Pattern FORMAT = Pattern
+                .compile("(?:(?:(\\*)|(\\?|L|LW)) | ([0-9]{1,2}|[a-z]{3,3})(?:(L|W) | -([0-9]{1,2}|[a-z]{3,3}))?)(?:(/|\\#)([0-9]{1,7}))?", Pattern.CASE_INSENSITIVE | Pattern.COMMENTS);
+
+        private ChronoField field;
+
+        /**
+         * [0] - start
+         * [1] - end
+         * [2] - increment
+         * [3] - modifier
+         * [4] - modifierForIncrement
+         */
+        private List<int[]> parts = new ArrayList();
+
+        RegexCron(ChronoField field, int min, int max, String names, String modifier, String increment, String expr) {
+            this.field = field;
+
+            for (String range : expr.split(",")) {
+                Matcher m = FORMAT.matcher(range);
+                if (!m.matches()) {
+                    throw new IllegalArgumentException(range);
+                }
+
+                String start = m.group(3);
+                String mod = m.group(4);
+                String end = m.group(5);
+                String inc = m.group(7);
+
+                int[] part = {-1, -1, 1, 0, 0};
+                if (start != null) {
+                    part[0] = part[1] = map(start, names);
+                    part[3] = mod == null ? 0 : mod.charAt(0);
+                    if (end != null) {
+                        part[1] = map(end, names);
+                    } else if (inc != null) {
+                        part[1] = max;
+                    }
+                }
+
+                // astarisk
+                if (m.group(1) != null) {
+                    part[0] = min;
+                    part[1] = max;
+                }
+                if (m.group(2) != null) {
+                    mod = m.group(2);
+                    part[3] = mod.charAt(mod.length() - 1);
+                }
+                if (inc != null) {
+                    part[4] = m.group(6).charAt(0);
+                    part[2] = Integer.parseInt(inc);
+                }
+
+                // validate parts
+                // @formatter:off
+                if ((part[0] != -1 && part[0] < min) || max < part[1] || part[0] > part[1] || (part[3] != 0 && modifier.indexOf(part[3]) == -1) || part[4] != 0 && increment.indexOf(part[4]) == -1) {
+                    throw new IllegalArgumentException(range);
+                }
+                // @formatter:on
+                parts.add(part);
+            }
+        }
+
+        private int map(String name, String names) {
+            int index = names.indexOf(name.toUpperCase().concat(" "));
+            if (index != -1) {
+                return index / 4 + 1;
+            }
+            int value = Integer.parseInt(name);
+            return value == 0 && field == ChronoField.DAY_OF_WEEK ? 7 : value;
+        }
+    }
+}
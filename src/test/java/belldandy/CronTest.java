@@ -11,10 +11,13 @@ package belldandy;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -185,6 +188,8 @@ class CronTest {
 
         assert invalidFormat("42-63 * * * * *");
         assert invalidFormat("42#3 * * * * *");
+        assert invalidFormat("*/0 * * * * *");
+        assert invalidFormat("10/0 * * * * *");
     }
 
     @Test
@@ -1031,6 +1036,203 @@ class CronTest {
         assert invalidFormat("0 0 0 * * 12");
     }
 
+    @Test
+    void invalidRange() {
+        assert assertThrows(IllegalArgumentException.class, () -> Scheduler.parse("0 1,60,2 * * *")).getMessage().equals("60");
+        assert assertThrows(IllegalArgumentException.class, () -> Scheduler.parse("0 0 * JAN-XYZ *")).getMessage().equals("JAN-XYZ");
+        assert assertThrows(IllegalArgumentException.class, () -> Scheduler.parse("0 0 5W/2,1W# * *")).getMessage().equals("1W#");
+        assert assertThrows(IllegalArgumentException.class, () -> Scheduler.parse("0 0 1,,2 * *")).getMessage().equals("");
+    }
+
+    @Test
+    void neverExecuted() {
+        assert invalidFormat("0 0 30 2 *");
+        assert invalidFormat("0 0 31 2,4,6,9,11 *");
+        assert invalidFormat("0 0 31 APR-JUN/2 *");
+        assert invalidFormat("0 0 ? * SUN#6");
+        assert invalidFormat("0 0 1 * SUN#2");
+        assert invalidFormat("0 0 8-14 * MON#1");
+    }
+
+    @Test
+    void rarelyExecuted() {
+        // these combinations appear in the real calendar, so they must not be rejected at parse
+        assert Scheduler.satisfiable(Scheduler.parse("0 0 29 2 *"));
+        assert Scheduler.satisfiable(Scheduler.parse("0 0 29 2 MON"));
+        assert Scheduler.satisfiable(Scheduler.parse("0 0 ? 2 SUN#5"));
+        assert Scheduler.satisfiable(Scheduler.parse("0 0 31 1-3 *"));
+        assert Scheduler.satisfiable(Scheduler.parse("0 0 LW 2 *"));
+    }
+
+    @Test
+    void gap() {
+        ZoneId berlin = ZoneId.of("Europe/Berlin");
+        Cron[] fields = Scheduler.parse("0 30 2 * * *");
+
+        // 02:30 is skipped on 2024-03-31, so it is executed at the end of gap
+        ZonedDateTime next = Scheduler.next(fields, ZonedDateTime.of(2024, 3, 31, 1, 59, 59, 0, berlin));
+        assert next.toLocalDateTime().equals(LocalDateTime.of(2024, 3, 31, 3, 0));
+        assert next.getOffset().getTotalSeconds() == 7200;
+
+        next = Scheduler.next(fields, next);
+        assert next.toLocalDateTime().equals(LocalDateTime.of(2024, 4, 1, 2, 30));
+    }
+
+    @Test
+    void overlap() {
+        ZoneId berlin = ZoneId.of("Europe/Berlin");
+        Cron[] fields = Scheduler.parse("0 30 2 * * *");
+
+        // 02:30 is repeated on 2024-10-27, so it is executed only at the first occurrence
+        ZonedDateTime next = Scheduler.next(fields, ZonedDateTime.of(2024, 10, 27, 0, 0, 0, 0, berlin));
+        assert next.toLocalDateTime().equals(LocalDateTime.of(2024, 10, 27, 2, 30));
+        assert next.getOffset().getTotalSeconds() == 7200;
+
+        next = Scheduler.next(fields, next);
+        assert next.toLocalDateTime().equals(LocalDateTime.of(2024, 10, 28, 2, 30));
+    }
+
+    @Test
+    void overlapHourly() {
+        ZoneId berlin = ZoneId.of("Europe/Berlin");
+        Cron[] fields = Scheduler.parse("0 0 * * * *");
+
+        ZonedDateTime next = Scheduler.next(fields, ZonedDateTime.of(2024, 10, 27, 1, 30, 0, 0, berlin));
+        assert next.toInstant().equals(Instant.parse("2024-10-27T00:00:00Z"));
+        next = Scheduler.next(fields, next);
+        assert next.toInstant().equals(Instant.parse("2024-10-27T02:00:00Z"));
+    }
+
+    @Test
+    void daily() {
+        assert Scheduler.parse("0 30 2 * * *")[3].every;
+        assert Scheduler.parse("0 30 2 ? * *")[3].every;
+        assert Scheduler.parse("0 30 2 1-31 * *")[3].every;
+        assert !Scheduler.parse("0 30 2 L * *")[3].every;
+        assert !Scheduler.parse("0 30 2 * * MON")[5].every;
+
+        Parsed parsed = new Parsed("15,45 */20 9-17 * * *");
+        assert parsed.next("2024-10-02T09:00:00", "2024-10-02T09:00:15");
+        assert parsed.next("2024-10-02T09:00:45", "2024-10-02T09:20:15");
+        assert parsed.next("2024-10-02T09:40:45", "2024-10-02T10:00:15");
+        assert parsed.next("2024-10-02T17:40:45", "2024-10-03T09:00:15");
+        assert parsed.next("2024-12-31T23:59:59", "2025-01-01T09:00:15");
+        assert parsed.next("2024-02-28T18:00:00", "2024-02-29T09:00:15");
+    }
+
+    @Test
+    void emptyField() {
+        assert assertThrows(IllegalArgumentException.class, () -> Scheduler.parse("0 , * * * *")).getMessage().equals(",");
+        assert assertThrows(IllegalArgumentException.class, () -> Scheduler.parse("0 0 , * * *")).getMessage().equals(",");
+        assert assertThrows(IllegalArgumentException.class, () -> Scheduler.parse(", 0 0 * * *")).getMessage().equals(",");
+        assert assertThrows(IllegalArgumentException.class, () -> Scheduler.parse("0 0 0 * ,, *")).getMessage().equals(",,");
+        assert assertThrows(IllegalArgumentException.class, () -> Scheduler.parse("0 0 0 , * ,")).getMessage().equals(",");
+    }
+
+    @Test
+    void days() {
+        // 2024-02 has 29 days and starts on Thursday
+        assert Scheduler.parse("0 0 0 LW * ?")[3].days(29, 4) == 1 << 28;
+        assert Scheduler.parse("0 0 0 1W * ?")[3].days(29, 4) == 1 << 0;
+        assert Scheduler.parse("0 0 0 ? * 5#2")[5].days(29, 4) == 1 << 8;
+        assert Scheduler.parse("0 0 0 ? * 4L")[5].days(29, 4) == 1 << 28;
+        assert Scheduler.parse("0 0 0 1,15 * ?")[3].days(29, 4) == (1 | 1 << 14);
+        assert Scheduler.parse("0 0 0 * * ?")[3].days(31, 1) == -1 >>> 1;
+    }
+
+    @Test
+    void previous() {
+        ZoneId utc = ZoneOffset.UTC;
+        assert previous("0 0 12 * * *", "2024-10-02T12:00:00", utc).equals("2024-10-01T12:00");
+        assert previous("0 0 12 * * *", "2024-10-02T12:00:01", utc).equals("2024-10-02T12:00");
+        assert previous("*/15 * * * * *", "2024-10-02T00:00:00", utc).equals("2024-10-01T23:59:45");
+        assert previous("0 0 0 1 JAN *", "2024-10-02T00:00:00", utc).equals("2024-01-01T00:00");
+        assert previous("0 0 0 29 2 *", "2025-02-01T00:00:00", utc).equals("2024-02-29T00:00");
+    }
+
+    @Test
+    void previousModifiers() {
+        ZoneId utc = ZoneOffset.UTC;
+        assert previous("0 0 0 L * ?", "2024-03-15T00:00:00", utc).equals("2024-02-29T00:00");
+        assert previous("0 0 0 LW * ?", "2024-04-15T00:00:00", utc).equals("2024-03-29T00:00");
+        assert previous("0 0 0 1W * ?", "2024-06-15T00:00:00", utc).equals("2024-06-03T00:00");
+        assert previous("0 0 0 ? * 5L", "2024-10-02T00:00:00", utc).equals("2024-09-27T00:00");
+        assert previous("0 0 0 ? * 2#3", "2024-10-02T00:00:00", utc).equals("2024-09-17T00:00");
+    }
+
+    @Test
+    void previousGap() {
+        ZoneId berlin = ZoneId.of("Europe/Berlin");
+        Cron[] fields = Scheduler.parse("0 30 2 * * *");
+
+        // 02:30 is skipped on 2024-03-31, so it was executed at the end of gap
+        ZonedDateTime previous = Scheduler.previous(fields, ZonedDateTime.of(2024, 3, 31, 4, 0, 0, 0, berlin));
+        assert previous.toLocalDateTime().equals(LocalDateTime.of(2024, 3, 31, 3, 0));
+    }
+
+    @Test
+    void previousOverlap() {
+        ZoneId berlin = ZoneId.of("Europe/Berlin");
+        Cron[] fields = Scheduler.parse("0 30 2 * * *");
+
+        // 02:30 is repeated on 2024-10-27, but it was executed only at the first occurrence
+        ZonedDateTime second = ZonedDateTime.ofStrict(LocalDateTime.of(2024, 10, 27, 2, 45), ZoneOffset.ofHours(1), berlin);
+        ZonedDateTime previous = Scheduler.previous(fields, second);
+        assert previous.toInstant().equals(Instant.parse("2024-10-27T00:30:00Z"));
+    }
+
+    @Test
+    void previousNotFound() {
+        assertThrows(IllegalArgumentException.class, () -> Scheduler.previous(Scheduler.parse("0 0 29 2 MON"), ZonedDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC)));
+    }
+
+    private String previous(String format, String base, ZoneId zone) {
+        return Scheduler.previous(Scheduler.parse(format), LocalDateTime.parse(base).atZone(zone)).toLocalDateTime().toString();
+    }
+
+    @Test
+    void allocationFree() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Cron[] fields = Scheduler.parse("0 0 0 L * ?");
+        long base = Instant.parse("2024-10-02T10:20:30Z").getEpochSecond();
+
+        // warm up to exclude the class loading
+        long result = 0;
+        for (int i = 0; i < 1000; i++) {
+            result += Scheduler.next(fields, base + i * 3600, ZoneOffset.UTC);
+        }
+
+        long before = bean.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 1000; i++) {
+            result += Scheduler.next(fields, base + i * 3600, ZoneOffset.UTC);
+        }
+        long after = bean.getCurrentThreadAllocatedBytes();
+        assert result != 0;
+        assert after - before < 1000 : "less than 1 byte per call";
+    }
+
+    @Test
+    void allocationFreeWithTransitions() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Cron[] fields = Scheduler.parse("0 30 2 * * *");
+        ZoneId berlin = ZoneId.of("Europe/Berlin");
+        long base = Instant.parse("2024-03-01T10:20:30Z").getEpochSecond();
+
+        // warm up to exclude the class loading and the expansion of transitions
+        long result = 0;
+        for (int i = 0; i < 1000; i++) {
+            result += Scheduler.next(fields, base + i * 3600, berlin);
+        }
+
+        long before = bean.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 1000; i++) {
+            result += Scheduler.next(fields, base + i * 3600, berlin);
+        }
+        long after = bean.getCurrentThreadAllocatedBytes();
+        assert result != 0;
+        assert after - before < 1000 : "less than 1 byte per call";
+    }
+
     private static class Parsed {
         Cron[] fields;
 
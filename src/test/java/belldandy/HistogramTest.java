@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class HistogramTest {
+
+    @Test
+    void empty() {
+        Histogram histogram = new Histogram();
+        assert histogram.count() == 0;
+        assert histogram.max() == 0;
+        assert histogram.mean() == 0;
+        assert histogram.percentile(50) == 0;
+    }
+
+    @Test
+    void exact() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 20; i++) {
+            histogram.record(i);
+        }
+        assert histogram.count() == 20;
+        assert histogram.max() == 20;
+        assert histogram.mean() == 10.5;
+        assert histogram.percentile(0) == 1;
+        assert histogram.percentile(50) == 10;
+        assert histogram.percentile(95) == 19;
+        assert histogram.percentile(100) == 20;
+    }
+
+    @Test
+    void negative() {
+        Histogram histogram = new Histogram();
+        histogram.record(-10);
+        assert histogram.count() == 1;
+        assert histogram.percentile(100) == 0;
+    }
+
+    @Test
+    void bucket() {
+        for (long value : new long[] {0, 1, 31, 32, 33, 47, 48, 1000, 123456789, Long.MAX_VALUE}) {
+            int index = Histogram.index(value);
+            assert value <= Histogram.highest(index) : value;
+            assert index == 0 || Histogram.highest(index - 1) < value : value;
+        }
+    }
+
+    @Test
+    void relativeError() {
+        Random random = new Random(1);
+        Histogram histogram = new Histogram();
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextLong(1000000);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long actual = histogram.percentile(percentile);
+            assert expected <= actual && actual <= expected * 1.0625 : percentile + " " + expected + " " + actual;
+        }
+    }
+
+    @Test
+    void snapshot() {
+        Histogram histogram = new Histogram();
+        histogram.record(10);
+        Histogram snapshot = histogram.snapshot();
+        histogram.record(20);
+
+        assert snapshot.count() == 1;
+        assert snapshot.max() == 10;
+        assert snapshot.percentile(100) == 10;
+        assert histogram.count() == 2;
+    }
+
+    @Test
+    void invalidPercentile() {
+        assertThrows(IllegalArgumentException.class, () -> new Histogram().percentile(-1));
+        assertThrows(IllegalArgumentException.class, () -> new Histogram().percentile(101));
+    }
+}
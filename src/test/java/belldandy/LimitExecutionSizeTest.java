@@ -9,7 +9,11 @@
  */
 package belldandy;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
 
@@ -33,4 +37,29 @@ public class LimitExecutionSizeTest extends SchedulerTestSupport {
         assert verifySuccessed(future2, "second");
         assert verifyExecutionOrder(verifier1, verifier2);
     }
+
+    @Test
+    void limitBurst() {
+        scheduler = new TestableScheduler(3);
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<Future> futures = new ArrayList();
+        for (int i = 0; i < 100; i++) {
+            futures.add(scheduler.schedule(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    // ignore
+                } finally {
+                    running.decrementAndGet();
+                }
+            }, 20, TimeUnit.MILLISECONDS));
+        }
+        assert scheduler.start().awaitExecutions(100);
+        assert scheduler.awaitIdling();
+        assert verifySuccessed(futures.toArray(Future[]::new));
+        assert peak.get() == 3;
+    }
 }
@@ -9,15 +9,26 @@
  */
 package belldandy;
 
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.Test;
 
+import kiss.WiseSupplier;
+
 @SuppressWarnings("resource")
 class SchedulerTest extends SchedulerTestSupport {
 
@@ -31,6 +42,61 @@ class SchedulerTest extends SchedulerTestSupport {
         assert count[0] == 1 : Arrays.toString(count) + "  " + count[0] + scheduler;
     }
 
+    @RepeatedTest(MULTIPLICITY)
+    void executeBypassesQueue() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        Future<String> future = scheduler.start().submit(() -> {
+            latch.await();
+            return "OK";
+        });
+        assert scheduler.queued() == 0;
+        assert scheduler.runs.size() == 1;
+
+        latch.countDown();
+        assert scheduler.awaitIdling();
+        assert verifySuccessed(future, "OK");
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void executeOverLimitWaitsInQueue() throws InterruptedException {
+        scheduler = new TestableScheduler(1);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        Future<String> future1 = scheduler.start().submit(() -> {
+            latch.await();
+            return "first";
+        });
+        Future<String> future2 = scheduler.submit(() -> "second");
+        assert scheduler.runs.size() == 1;
+        assert scheduler.queued() == 1;
+
+        latch.countDown();
+        assert scheduler.awaitIdling();
+        assert verifySuccessed(future1, "first");
+        assert verifySuccessed(future2, "second");
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void executeYieldsToWaitingDispatcher() {
+        MetricsRecorder recorder = new MetricsRecorder();
+        scheduler.setMetrics(recorder);
+        scheduler.start();
+
+        // while the dispatcher is waiting for the permit, the new task goes through the dispatcher
+        scheduler.waiting.incrementAndGet();
+        Future<String> future1 = scheduler.submit(() -> "first");
+        assert scheduler.awaitIdling();
+        assert verifySuccessed(future1, "first");
+        assert recorder.getDispatchedCount() == 1;
+
+        // otherwise, it bypasses the dispatcher
+        scheduler.waiting.decrementAndGet();
+        Future<String> future2 = scheduler.submit(() -> "second");
+        assert scheduler.awaitIdling();
+        assert verifySuccessed(future2, "second");
+        assert recorder.getDispatchedCount() == 1;
+    }
+
     @RepeatedTest(MULTIPLICITY)
     void submitCallable() {
         Verifier verifier = new Verifier("OK");
@@ -143,6 +209,157 @@ class SchedulerTest extends SchedulerTestSupport {
         assert verifier.verifyExecutionCount(1);
     }
 
+    @RepeatedTest(MULTIPLICITY)
+    void scheduleCancelReleasesTask() {
+        Verifier verifier = new Verifier("OK");
+        ScheduledFuture<String> future = scheduler.start().schedule((Callable) verifier, 1, TimeUnit.DAYS);
+        assert scheduler.queued() == 1;
+
+        future.cancel(false);
+        assert scheduler.queued() == 0;
+        assert verifyCanceled(future);
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void scheduleCancelWithoutRemoval() {
+        scheduler.setRemoveOnCancelPolicy(false);
+        assert scheduler.getRemoveOnCancelPolicy() == false;
+
+        Verifier verifier = new Verifier("OK");
+        ScheduledFuture<String> future = scheduler.start().schedule((Callable) verifier, 1, TimeUnit.DAYS);
+        assert scheduler.queued() == 1;
+
+        future.cancel(false);
+        assert scheduler.queued() == 1;
+        assert verifyCanceled(future);
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void scheduleCancelRunningTask() {
+        Verifier verifier = new Verifier(() -> {
+            Thread.sleep(100);
+            return "OK";
+        });
+        Task task = (Task) scheduler.start().schedule((Callable) verifier, 10, TimeUnit.MILLISECONDS);
+        assert task.dispatcher != null;
+        assert scheduler.awaitRunning();
+
+        // the running task is already released by the dispatcher, so it is not signaled
+        assert task.dispatcher == null;
+        assert task.cancel(false);
+        assert verifyCanceled(task);
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void scheduleBulkCancelWithoutRemoval() {
+        scheduler.setRemoveOnCancelPolicy(false);
+
+        List<ScheduledFuture<?>> futures = new ArrayList();
+        for (int i = 0; i < 4096; i++) {
+            futures.add(scheduler.schedule(new Verifier().asRunnable(), 1, TimeUnit.DAYS));
+        }
+        ScheduledFuture<?> live = scheduler.schedule(new Verifier().asRunnable(), 1, TimeUnit.DAYS);
+        scheduler.start();
+
+        for (ScheduledFuture<?> future : futures) {
+            future.cancel(false);
+        }
+
+        // the dead tasks less than the compaction threshold may remain
+        assert scheduler.queued() <= 1024;
+        assert live.isDone() == false;
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void scheduleBulkCancel() {
+        List<ScheduledFuture<?>> futures = new ArrayList();
+        for (int i = 0; i < 4096; i++) {
+            futures.add(scheduler.schedule(new Verifier().asRunnable(), 1, TimeUnit.DAYS));
+        }
+        ScheduledFuture<?> live = scheduler.schedule(new Verifier().asRunnable(), 50, TimeUnit.MILLISECONDS);
+        scheduler.start();
+
+        for (ScheduledFuture<?> future : futures) {
+            future.cancel(false);
+        }
+        assert scheduler.awaitIdling();
+        assert verifySuccessed(live);
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void scheduleWithDeferredThread() {
+        scheduler.setDeferThreadCreationPolicy(true);
+
+        Verifier verifier = new Verifier("OK");
+        ScheduledFuture<String> future = scheduler.schedule((Callable) verifier, 50, TimeUnit.MILLISECONDS);
+        assert scheduler.start().awaitIdling();
+        assert verifySuccessed(future, "OK");
+        assert verifier.verifyInitialDelay(50);
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void fixedRateWithDeferredThread() {
+        scheduler.setDeferThreadCreationPolicy(true);
+
+        Verifier verifier = new Verifier();
+        ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(verifier, 0, 50, TimeUnit.MILLISECONDS);
+
+        assert verifyRunning(future);
+        assert scheduler.start().awaitExecutions(3);
+        assert verifier.verifyExecutionCount(3);
+        assert verifier.verifyRate(0, 30, 30);
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void scheduleBurst() {
+        AtomicInteger count = new AtomicInteger();
+        List<Future> futures = new ArrayList();
+        for (int i = 0; i < 2000; i++) {
+            futures.add(scheduler.schedule(count::incrementAndGet, 50, TimeUnit.MILLISECONDS));
+        }
+        assert scheduler.start().awaitExecutions(2000);
+        assert scheduler.awaitIdling();
+        assert verifySuccessed(futures.toArray(Future[]::new));
+        assert count.get() == 2000;
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void rescheduleEarlier() {
+        Verifier verifier = new Verifier("OK");
+        ScheduledFuture<String> future = scheduler.start().schedule((Callable) verifier, 1, TimeUnit.DAYS);
+        assert scheduler.reschedule(future, 50, TimeUnit.MILLISECONDS);
+        assert scheduler.awaitIdling();
+        assert verifySuccessed(future, "OK");
+        assert verifier.verifyInitialDelay(50);
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void rescheduleLater() {
+        Verifier verifier1 = new Verifier();
+        Verifier verifier2 = new Verifier();
+        ScheduledFuture<String> future1 = scheduler.schedule((Callable) verifier1, 10, TimeUnit.MILLISECONDS);
+        ScheduledFuture<String> future2 = scheduler.schedule((Callable) verifier2, 50, TimeUnit.MILLISECONDS);
+        assert scheduler.reschedule(future1, 100, TimeUnit.MILLISECONDS);
+        assert scheduler.start().awaitIdling();
+        assert verifySuccessed(future1, future2);
+        assert verifier1.verifyInitialDelay(100);
+        assert verifyExecutionOrder(verifier2, verifier1);
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void rescheduleCompletedTask() {
+        ScheduledFuture<?> future = scheduler.schedule(new Verifier().asRunnable(), 10, TimeUnit.MILLISECONDS);
+        assert scheduler.start().awaitIdling();
+        assert scheduler.reschedule(future, 10, TimeUnit.MILLISECONDS) == false;
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void rescheduleCancelledTask() {
+        ScheduledFuture<?> future = scheduler.schedule(new Verifier().asRunnable(), 10, TimeUnit.MILLISECONDS);
+        future.cancel(false);
+        assert scheduler.reschedule(future, 10, TimeUnit.MILLISECONDS) == false;
+    }
+
     @RepeatedTest(MULTIPLICITY)
     void fixedRate() {
         Verifier verifier = new Verifier();
@@ -165,6 +382,47 @@ class SchedulerTest extends SchedulerTestSupport {
         assert verifier.verifyInterval(0, 50, 50);
     }
 
+    @RepeatedTest(MULTIPLICITY)
+    void fixedRateWithJitter() {
+        Verifier verifier = new Verifier();
+        ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(verifier, 0, 50, 10, TimeUnit.MILLISECONDS);
+
+        assert verifyRunning(future);
+        assert scheduler.start().awaitExecutions(3);
+        assert verifier.verifyExecutionCount(3);
+        assert verifier.verifyRate(0, 30, 30);
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void fixedDelayWithJitter() {
+        Verifier verifier = new Verifier();
+        ScheduledFuture<?> future = scheduler.scheduleWithFixedDelay(verifier, 0, 50, 10, TimeUnit.MILLISECONDS);
+
+        assert verifyRunning(future);
+        assert scheduler.start().awaitExecutions(3);
+        assert verifier.verifyExecutionCount(3);
+        assert verifier.verifyInterval(0, 50, 50);
+    }
+
+    @Test
+    void jitterSpread() {
+        Set<Long> delays = new HashSet();
+        for (int i = 0; i < 100; i++) {
+            ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(new Verifier(), 1, 1, 1, TimeUnit.HOURS);
+            long delay = future.getDelay(TimeUnit.MILLISECONDS);
+            assert 3600000 - 1000 <= delay && delay <= 7200000 : delay;
+            delays.add(delay / 1000);
+            future.cancel(false);
+        }
+        assert 50 < delays.size();
+    }
+
+    @Test
+    void jitterNegative() {
+        assertThrows(IllegalArgumentException.class, () -> scheduler.scheduleAtFixedRate(new Verifier(), 0, 1, -1, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> scheduler.scheduleWithFixedDelay(new Verifier(), 0, 1, -1, TimeUnit.SECONDS));
+    }
+
     @Test
     void cron() {
         scheduler.limitAwaitTime(5000);
@@ -191,6 +449,291 @@ class SchedulerTest extends SchedulerTestSupport {
         assert verifier.verifyInterval(0, 2000);
     }
 
+    @Test
+    void cronExpression() {
+        scheduler.limitAwaitTime(5000);
+
+        Verifier verifier = new Verifier();
+        ScheduledFuture<?> future = scheduler.scheduleAt(verifier, CronExpression.of("* * * * * *"));
+
+        assert verifyRunning(future);
+        assert scheduler.start().awaitExecutions(2);
+        assert verifier.verifyExecutionCount(2);
+        assert verifier.verifyRate(0, 1000);
+    }
+
+    @Test
+    void cronZone() {
+        scheduler.limitAwaitTime(5000);
+
+        Verifier verifier = new Verifier();
+        ScheduledFuture<?> future = scheduler.scheduleAt(verifier, "* * * * * *", ZoneId.of("Asia/Kolkata"));
+        scheduler.scheduleAt(new Verifier(), "* * * * * *", ZoneId.of("Europe/Berlin"));
+
+        // the groups are separated by the time zone
+        assert scheduler.groups.size() == 2;
+        assert verifyRunning(future);
+        assert scheduler.start().awaitExecutions(4);
+        assert verifier.verifyRate(0, 1000);
+    }
+
+    @Test
+    void cronGroup() throws Exception {
+        scheduler.limitAwaitTime(5000);
+
+        Verifier verifier1 = new Verifier();
+        Verifier verifier2 = new Verifier();
+        ScheduledFuture<?> future1 = scheduler.scheduleAt(verifier1, "* * * * * *");
+        ScheduledFuture<?> future2 = scheduler.scheduleAt(verifier2, "*  * * * * *");
+        ScheduledFuture<?> future3 = scheduler.scheduleAt(new Verifier(), "0 0 1 1 *");
+
+        // the tasks on the same expression share the trigger
+        assert scheduler.groups.size() == 2;
+        assert scheduler.start().awaitExecutions(4);
+        assert verifyRunning(future1, future2, future3);
+        assert verifier1.verifyExecutionCount(2);
+        assert verifier2.verifyExecutionCount(2);
+        assert verifier1.verifyRate(0, 1000);
+
+        // the group which has no member is removed with its trigger immediately
+        future1.cancel(false);
+        assert scheduler.groups.size() == 2;
+        future2.cancel(false);
+        assert verifyCanceled(future1, future2);
+        assert scheduler.groups.size() == 1;
+        assert scheduler.queued() == 1;
+    }
+
+    @Test
+    void cronTriggerIsInternal() {
+        scheduler.limitAwaitTime(5000);
+        MetricsRecorder recorder = new MetricsRecorder();
+        scheduler.setMetrics(recorder);
+
+        ScheduledFuture<?> future = scheduler.scheduleAt(new Verifier(), "* * * * * *");
+        assert scheduler.start().awaitExecutions(2);
+        future.cancel(false);
+        assert scheduler.awaitIdling();
+
+        // only the member is observed
+        assert 2 <= recorder.getCompletedCount();
+        assert recorder.getScheduledCount() == recorder.getCompletedCount();
+        assert recorder.getDispatchedCount() <= recorder.getCompletedCount();
+    }
+
+    @Test
+    void cronShutdownNow() {
+        ScheduledFuture<?> future1 = scheduler.scheduleAt(new Verifier(), "0 0 1 1 *");
+        ScheduledFuture<?> future2 = scheduler.scheduleAt(new Verifier(), "0 0 1 1 *");
+        ScheduledFuture<?> future3 = scheduler.schedule(new Verifier().asRunnable(), 1, TimeUnit.DAYS);
+        assert scheduler.start().queued() == 2;
+
+        // the trigger is expanded into its members
+        List<Runnable> remains = scheduler.shutdownNow();
+        assert remains.size() == 3;
+        assert remains.containsAll(List.of(future1, future2, future3));
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void misfireFireAll() {
+        Verifier verifier = new Verifier(slowAtFirst(200));
+        scheduler.scheduleAtFixedRate(verifier, 0, 50, TimeUnit.MILLISECONDS);
+
+        // the missed executions run back-to-back
+        assert scheduler.start().awaitExecutions(4);
+        assert scheduler.getSkippedExecutionCount() == 0;
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void misfireCoalesce() {
+        scheduler.setMisfirePolicy(Misfire.COALESCE);
+
+        Verifier verifier = new Verifier(slowAtFirst(200));
+        ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(verifier, 0, 50, TimeUnit.MILLISECONDS);
+
+        // the missed executions run only once immediately
+        assert scheduler.start().awaitExecutions(2);
+        future.cancel(false);
+        assert 2 <= scheduler.getSkippedExecutionCount();
+        assert verifier.verifyRate(0, 200);
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void misfireCoalesceWithJitter() {
+        scheduler.setMisfirePolicy(Misfire.COALESCE);
+
+        Verifier verifier = new Verifier(slowAtFirst(200));
+        Task task = (Task) scheduler.scheduleAtFixedRate(verifier, 0, 50, 20, TimeUnit.MILLISECONDS);
+        long base = task.next - task.offset;
+
+        // the coalesced execution keeps the base schedule, the jitter doesn't shift it
+        assert scheduler.start().awaitExecutions(4);
+        task.cancel(false);
+        assert scheduler.awaitIdling();
+        assert 2 <= scheduler.getSkippedExecutionCount();
+        assert (task.next - task.offset - base) % 50 == 0;
+        assert 0 <= task.offset && task.offset <= 20;
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void misfireSkip() {
+        scheduler.setMisfirePolicy(Misfire.SKIP);
+
+        Verifier verifier = new Verifier(slowAtFirst(200));
+        ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(verifier, 0, 50, TimeUnit.MILLISECONDS);
+
+        // the missed executions are skipped, and the next one waits for the schedule
+        assert scheduler.start().awaitExecutions(2);
+        future.cancel(false);
+        assert 3 <= scheduler.getSkippedExecutionCount();
+        assert verifier.verifyRate(0, 250);
+    }
+
+    @Test
+    void misfireCron() {
+        for (Misfire misfire : Misfire.values()) {
+            scheduler.setMisfirePolicy(misfire);
+            scheduler.scheduleAt(new Verifier(), "* * * * * *", ZoneId.of("UTC"));
+        }
+        assert scheduler.groups.size() == 3;
+
+        long now = System.currentTimeMillis();
+        for (CronGroup group : scheduler.groups.values()) {
+            long skipped = scheduler.getSkippedExecutionCount();
+            group.trigger.next = group.members.peek().next = Math.floorDiv(now, 1000) * 1000 - 5000;
+            group.call();
+            skipped = scheduler.getSkippedExecutionCount() - skipped;
+
+            switch (group.key.misfire()) {
+            case FIRE_ALL -> {
+                assert skipped == 0;
+                assert group.next <= now;
+            }
+            case COALESCE -> {
+                assert 5 <= skipped && skipped <= 6 : skipped;
+                assert now < group.next;
+                assert group.members.peek().pending;
+            }
+            case SKIP -> {
+                assert 6 <= skipped && skipped <= 7 : skipped;
+                assert now < group.next;
+                assert !group.members.peek().pending;
+            }
+            }
+        }
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void overlapConcurrent() throws Exception {
+        scheduler.setOverlapPolicy(Overlap.concurrent(3));
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(() -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                // ignore
+            } finally {
+                running.decrementAndGet();
+            }
+        }, 0, 50, TimeUnit.MILLISECONDS);
+
+        // the executions overlap up to the limit, and the rest are skipped
+        assert scheduler.start().awaitExecutions(3);
+        future.cancel(false);
+        assert 2 <= peak.get() && peak.get() <= 3 : peak;
+        assert 1 <= scheduler.getSkippedExecutionCount();
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void overlapCancelPrevious() {
+        scheduler.setOverlapPolicy(Overlap.CANCEL_PREVIOUS);
+
+        AtomicInteger interrupted = new AtomicInteger();
+        ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(() -> {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                interrupted.incrementAndGet();
+            }
+        }, 0, 50, TimeUnit.MILLISECONDS);
+
+        // the previous execution is interrupted by the next one
+        assert scheduler.start().awaitExecutions(3);
+        assert 3 <= interrupted.get();
+        assert verifyRunning(future);
+        future.cancel(true);
+        assert verifyCanceled(future);
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void overlapFailure() {
+        scheduler.setOverlapPolicy(Overlap.concurrent(2));
+
+        Verifier verifier = new Verifier(new Error("Fail"));
+        ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(verifier, 0, 50, TimeUnit.MILLISECONDS);
+
+        // the failure of execution stops the periodic task
+        assert scheduler.start().awaitExecutions(1);
+        assert scheduler.awaitIdling();
+        assert verifyFailed(future);
+        assert verifier.verifyExecutionCount(1);
+    }
+
+    @Test
+    void overlapInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> Overlap.concurrent(0));
+        assertThrows(NullPointerException.class, () -> scheduler.setOverlapPolicy(null));
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void metrics() {
+        MetricsRecorder recorder = new MetricsRecorder();
+        scheduler.setMetrics(recorder);
+
+        Verifier verifier = new Verifier();
+        ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(verifier, 0, 20, TimeUnit.MILLISECONDS);
+        Verifier failure = new Verifier(new Error("Fail"));
+        scheduler.schedule((Callable) failure, 10, TimeUnit.MILLISECONDS);
+
+        assert scheduler.start().awaitExecutions(4);
+        future.cancel(false);
+        assert scheduler.awaitIdling();
+
+        assert 4 <= recorder.getScheduledCount();
+        assert 3 <= recorder.getDispatchedCount();
+        assert 4 <= recorder.getCompletedCount();
+        assert recorder.getFailedCount() == 1;
+        assert recorder.lag().count() == recorder.getCompletedCount();
+        assert recorder.runTime().count() == recorder.getCompletedCount();
+        assert 0 < recorder.depth().count();
+    }
+
+    @Test
+    void metricsWait() {
+        TestableScheduler scheduler = new TestableScheduler(1);
+        MetricsRecorder recorder = new MetricsRecorder();
+        scheduler.setMetrics(recorder);
+
+        // the second task waits for the permit which is held by the first task
+        scheduler.schedule(new Verifier(slowAtFirst(100)).asCallable(), 0, TimeUnit.MILLISECONDS);
+        scheduler.schedule(new Verifier().asCallable(), 10, TimeUnit.MILLISECONDS);
+        assert scheduler.start().awaitExecutions(2);
+        assert 0 < recorder.permitWait().count();
+        assert 50_000_000 <= recorder.permitWait().max();
+        scheduler.shutdownNow();
+    }
+
+    private WiseSupplier<String> slowAtFirst(long millis) {
+        AtomicInteger count = new AtomicInteger();
+        return () -> {
+            if (count.getAndIncrement() == 0) Thread.sleep(millis);
+            return "OK";
+        };
+    }
+
     @RepeatedTest(MULTIPLICITY)
     void handleExceptionDuringTask() {
         Verifier verifier = new Verifier(new Error("Fail"));
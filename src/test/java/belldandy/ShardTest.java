@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("resource")
+class ShardTest extends SchedulerTestSupport {
+
+    /**
+     * Replace the default scheduler by the started sharded scheduler.
+     * 
+     * @param limit The concurrency limit.
+     * @param shards The number of shards.
+     */
+    private void shard(int limit, int shards) {
+        scheduler.shutdown();
+        scheduler = new TestableScheduler(limit, shards).start();
+    }
+
+    private List<Future> submitFromThreads(int threads, int tasks, long delay, Runnable command) throws InterruptedException {
+        List<Future> futures = new ArrayList();
+        List<Thread> producers = new ArrayList();
+        for (int i = 0; i < threads; i++) {
+            producers.add(Thread.ofPlatform().start(() -> {
+                for (int j = 0; j < tasks; j++) {
+                    Future future = scheduler.schedule(command, delay + j % 10, TimeUnit.MILLISECONDS);
+                    synchronized (futures) {
+                        futures.add(future);
+                    }
+                }
+            }));
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        return futures;
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void submitFromManyThreads() throws InterruptedException {
+        shard(Integer.MAX_VALUE, 4);
+
+        AtomicInteger count = new AtomicInteger();
+        List<Future> futures = submitFromThreads(8, 100, 200, count::incrementAndGet);
+
+        // the producers are spread over the shards while the tasks are waiting
+        assert 1 < Stream.of(scheduler.dispatchers).filter(dispatcher -> dispatcher.size() != 0).count();
+        assert scheduler.awaitExecutions(800);
+        assert scheduler.awaitIdling();
+        assert count.get() == 800;
+        assert verifySuccessed(futures.toArray(Future[]::new));
+    }
+
+    @Test
+    void shareLimit() throws InterruptedException {
+        shard(2, 4);
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        submitFromThreads(4, 5, 0, () -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                // ignore
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+        assert scheduler.awaitExecutions(20);
+        assert scheduler.awaitIdling();
+        assert peak.get() == 2;
+    }
+
+    @Test
+    void shutdownNowCollectsAllShards() throws InterruptedException {
+        shard(Integer.MAX_VALUE, 4);
+
+        List<Thread> producers = new ArrayList();
+        for (int i = 0; i < 4; i++) {
+            producers.add(Thread.ofPlatform().start(() -> scheduler.schedule(new Verifier().asRunnable(), 1, TimeUnit.DAYS)));
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assert scheduler.queued() == 4;
+        assert scheduler.shutdownNow().size() == 4;
+        assert scheduler.isTerminated();
+    }
+}
@@ -14,12 +14,18 @@ import java.util.concurrent.TimeUnit;
 
 public class StressBench {
 
+    /** The number of pending timers. */
+    private static final int TIMERS = 1000_000;
+
     @SuppressWarnings("resource")
     public static void main(String args[]) throws Exception {
+        measure(false);
+        measure(true);
+
         Random random = new Random();
         Scheduler scheduler = new Scheduler();
 
-        for (int counter = 0; counter < 1000_000; ++counter) {
+        for (int counter = 0; counter < TIMERS; ++counter) {
             scheduler.schedule(new Job(counter), random.nextLong(5000, 1000 * 90), TimeUnit.MILLISECONDS);
         }
 
@@ -28,6 +34,41 @@ public class StressBench {
         Thread.sleep(1000 * 90);
     }
 
+    /**
+     * Measure the retained heap size per pending task.
+     * 
+     * @param defer The thread creation policy.
+     */
+    private static void measure(boolean defer) throws Exception {
+        Scheduler scheduler = new Scheduler();
+        scheduler.setDeferThreadCreationPolicy(defer);
+
+        long before = usedMemory();
+        for (int counter = 0; counter < TIMERS; ++counter) {
+            scheduler.schedule(new Job(counter), 1, TimeUnit.DAYS);
+        }
+        // move all tasks from the intake into the task queue
+        scheduler.queued();
+        long after = usedMemory();
+
+        System.out.println((defer ? "Deferred" : "Eager") + " thread creation: " + (after - before) / TIMERS + " bytes per pending task");
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Compute the used heap size after GC.
+     * 
+     * @return The used heap size.
+     */
+    private static long usedMemory() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
     record Job(int id) implements Runnable {
         @Override
         public void run() {
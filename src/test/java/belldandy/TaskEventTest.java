@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import kiss.I;
+
+class TaskEventTest extends SchedulerTestSupport {
+
+    /**
+     * Record the events of task lifecycle while the action is running.
+     * 
+     * @param action The recorded action.
+     * @return The recorded events.
+     */
+    private List<RecordedEvent> record(Runnable action) {
+        try (Recording recording = new Recording()) {
+            for (String name : List.of("Schedule", "Dispatch", "Start", "End", "Cancel", "Reject")) {
+                recording.enable("belldandy." + name);
+            }
+            recording.start();
+            action.run();
+            recording.stop();
+
+            Path file = Files.createTempFile("belldandy", ".jfr");
+            try {
+                recording.dump(file);
+                return RecordingFile.readAllEvents(file);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } catch (Exception e) {
+            throw I.quiet(e);
+        }
+    }
+
+    /**
+     * Collect the events by name.
+     * 
+     * @param events The recorded events.
+     * @param name The simple name of event.
+     * @return The matched events.
+     */
+    private List<RecordedEvent> select(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals("belldandy." + name)).toList();
+    }
+
+    @Test
+    void disabledByDefault() {
+        assert !new TaskEvent.Schedule().isEnabled();
+        assert !new TaskEvent.Dispatch().isEnabled();
+        assert !new TaskEvent.Start().isEnabled();
+        assert !new TaskEvent.End().isEnabled();
+        assert !new TaskEvent.Cancel().isEnabled();
+        assert !new TaskEvent.Reject().isEnabled();
+    }
+
+    @Test
+    void lifecycle() {
+        List<RecordedEvent> events = record(() -> {
+            scheduler.schedule(new Verifier().asCallable(), 20, TimeUnit.MILLISECONDS);
+            scheduler.schedule((Callable) new Verifier(new Error("Fail")), 0, TimeUnit.MILLISECONDS);
+            assert scheduler.start().awaitExecutions(2);
+            assert scheduler.awaitIdling();
+        });
+
+        assert select(events, "Schedule").size() == 2;
+        assert select(events, "Dispatch").size() == 2;
+        assert select(events, "Start").size() == 2;
+
+        List<RecordedEvent> ends = select(events, "End");
+        assert ends.size() == 2;
+        assert ends.stream().filter(e -> e.getBoolean("failed")).count() == 1;
+        for (RecordedEvent end : ends) {
+            Instant next = end.getInstant("next");
+            Instant start = end.getInstant("start");
+            assert !start.isBefore(next);
+            assert 0 <= end.getDuration("duration").toNanos();
+            assert 0 <= end.getDuration("wait").toNanos();
+        }
+    }
+
+    @Test
+    void periodic() {
+        List<RecordedEvent> events = record(() -> {
+            ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(new Verifier(), 0, 20, TimeUnit.MILLISECONDS);
+            assert scheduler.start().awaitExecutions(3);
+            future.cancel(false);
+            assert scheduler.awaitIdling();
+        });
+
+        // the dispatch precedes the start, so it never reports the start of previous execution
+        List<RecordedEvent> dispatches = select(events, "Dispatch");
+        assert 3 <= dispatches.size();
+        for (RecordedEvent dispatch : dispatches) {
+            assert dispatch.getLong("start") == 0;
+        }
+
+        for (RecordedEvent start : select(events, "Start")) {
+            assert !start.getInstant("start").isBefore(start.getInstant("next"));
+        }
+    }
+
+    @Test
+    void permitWait() {
+        List<RecordedEvent> events = record(() -> {
+            TestableScheduler scheduler = new TestableScheduler(1);
+            scheduler.schedule(new Verifier(() -> {
+                Thread.sleep(100);
+                return "slow";
+            }).asCallable(), 0, TimeUnit.MILLISECONDS);
+            scheduler.schedule(new Verifier().asCallable(), 10, TimeUnit.MILLISECONDS);
+            assert scheduler.start().awaitExecutions(2);
+            assert scheduler.awaitIdling();
+        });
+
+        List<RecordedEvent> dispatches = select(events, "Dispatch");
+        assert dispatches.size() == 2;
+        assert dispatches.stream().anyMatch(e -> 50 <= e.getDuration("wait").toMillis());
+    }
+
+    @Test
+    void cancel() {
+        List<RecordedEvent> events = record(() -> {
+            ScheduledFuture<?> future = scheduler.schedule(new Verifier().asCallable(), 1, TimeUnit.HOURS);
+            scheduler.start();
+            assert future.cancel(false);
+            assert !future.cancel(false);
+        });
+
+        List<RecordedEvent> cancels = select(events, "Cancel");
+        assert cancels.size() == 1;
+        assert cancels.get(0).getInstant("next").isAfter(Instant.now());
+        assert select(events, "Start").isEmpty();
+    }
+
+    @Test
+    void reject() {
+        List<RecordedEvent> events = record(() -> {
+            scheduler.start().shutdown();
+            try {
+                scheduler.schedule(new Verifier().asCallable(), 0, TimeUnit.MILLISECONDS);
+                throw new AssertionError();
+            } catch (RejectedExecutionException e) {
+                // expected
+            }
+        });
+
+        assert select(events, "Reject").size() == 1;
+        assert select(events, "Schedule").isEmpty();
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+class TaskHeapTest {
+
+    private Task task(long next) {
+        return new Task(Executors.callable(() -> {
+        }), next, null);
+    }
+
+    @Test
+    void pollInOrder() {
+        TaskHeap heap = new TaskHeap();
+        List<Task> tasks = new ArrayList();
+        Random random = new Random();
+        for (int i = 0; i < 1000; i++) {
+            Task task = task(random.nextInt(100000));
+            tasks.add(task);
+            heap.add(task);
+        }
+        assert heap.size() == 1000;
+
+        tasks.sort((a, b) -> Long.compare(a.next, b.next));
+        for (Task task : tasks) {
+            Task polled = heap.poll(Long.MAX_VALUE);
+            assert polled.next == task.next;
+            assert polled.index == -1;
+        }
+        assert heap.size() == 0;
+        assert heap.poll(Long.MAX_VALUE) == null;
+    }
+
+    @Test
+    void pollExpiredOnly() {
+        TaskHeap heap = new TaskHeap();
+        heap.add(task(20));
+        heap.add(task(10));
+
+        assert heap.next() == 10;
+        assert heap.poll(9) == null;
+        assert heap.poll(10).next == 10;
+        assert heap.poll(19) == null;
+        assert heap.poll(20).next == 20;
+        assert heap.next() == Long.MAX_VALUE;
+    }
+
+    @Test
+    void removeArbitrary() {
+        TaskHeap heap = new TaskHeap();
+        List<Task> tasks = new ArrayList();
+        for (int i = 0; i < 1000; i++) {
+            Task task = task(i);
+            tasks.add(task);
+            heap.add(task);
+        }
+
+        Collections.shuffle(tasks);
+        for (int i = 0; i < 500; i++) {
+            assert heap.remove(tasks.get(i));
+            assert heap.remove(tasks.get(i)) == false;
+        }
+        assert heap.size() == 500;
+
+        List<Task> remains = new ArrayList(tasks.subList(500, 1000));
+        remains.sort((a, b) -> Long.compare(a.next, b.next));
+        for (Task task : remains) {
+            assert heap.poll(Long.MAX_VALUE) == task;
+        }
+    }
+
+    @Test
+    void update() {
+        TaskHeap heap = new TaskHeap();
+        Task task1 = task(10);
+        Task task2 = task(20);
+        Task task3 = task(30);
+        heap.add(task1);
+        heap.add(task2);
+        heap.add(task3);
+
+        task3.next = 5;
+        assert heap.update(task3);
+        assert heap.next() == 5;
+
+        task3.next = 25;
+        assert heap.update(task3);
+        assert heap.poll(100) == task1;
+        assert heap.poll(100) == task2;
+        assert heap.poll(100) == task3;
+        assert heap.update(task3) == false;
+    }
+
+    @Test
+    void pollNeverRetrievesPostponedTask() {
+        TaskHeap heap = new TaskHeap();
+        Task task1 = task(10);
+        Task task2 = task(20);
+        heap.add(task1);
+        heap.add(task2);
+
+        // not notified yet
+        task1.next = 30;
+        assert heap.poll(15) == null;
+        assert heap.poll(20) == task2;
+        assert heap.poll(30) == task1;
+    }
+
+    @Test
+    void removeFromOtherHeap() {
+        TaskHeap heap1 = new TaskHeap();
+        TaskHeap heap2 = new TaskHeap();
+        Task task1 = task(10);
+        Task task2 = task(20);
+        heap1.add(task1);
+        heap2.add(task2);
+
+        assert heap1.remove(task2) == false;
+        assert heap1.size() == 1;
+    }
+
+    @Test
+    void purge() {
+        TaskHeap heap = new TaskHeap();
+        List<Task> tasks = new ArrayList();
+        Random random = new Random();
+        for (int i = 0; i < 1000; i++) {
+            Task task = task(random.nextInt(100000));
+            tasks.add(task);
+            heap.add(task);
+        }
+
+        List<Task> lives = new ArrayList();
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            if (i % 3 == 0) {
+                lives.add(task);
+            } else {
+                task.cancel(false);
+            }
+        }
+        assert heap.purge() == 1000 - lives.size();
+        assert heap.size() == lives.size();
+
+        lives.sort((a, b) -> Long.compare(a.next, b.next));
+        for (Task task : lives) {
+            Task polled = heap.poll(Long.MAX_VALUE);
+            assert polled.next == task.next;
+            assert polled.isCancelled() == false;
+        }
+        assert heap.size() == 0;
+    }
+}
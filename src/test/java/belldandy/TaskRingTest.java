@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+class TaskRingTest {
+
+    private Task task() {
+        return new Task(Executors.callable(() -> {
+        }), 0, null);
+    }
+
+    @Test
+    void offerAndPoll() {
+        TaskRing ring = new TaskRing(4);
+        assert ring.isEmpty();
+        assert ring.poll() == null;
+
+        Task task1 = task();
+        Task task2 = task();
+        assert ring.offer(task1);
+        assert ring.offer(task2);
+        assert ring.size() == 2;
+        assert ring.poll() == task1;
+        assert ring.poll() == task2;
+        assert ring.poll() == null;
+        assert ring.isEmpty();
+    }
+
+    @Test
+    void full() {
+        TaskRing ring = new TaskRing(4);
+        for (int i = 0; i < 4; i++) {
+            assert ring.offer(task());
+        }
+        assert ring.offer(task()) == false;
+
+        assert ring.poll() != null;
+        assert ring.offer(task());
+    }
+
+    @Test
+    void multipleProducers() throws InterruptedException {
+        TaskRing ring = new TaskRing(64);
+        Set<Task> received = new HashSet();
+        List<Thread> producers = new ArrayList();
+        for (int i = 0; i < 4; i++) {
+            producers.add(Thread.ofPlatform().start(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    Task task = task();
+                    while (!ring.offer(task)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            }));
+        }
+
+        while (received.size() < 40000) {
+            Task task = ring.poll();
+            if (task != null) {
+                assert received.add(task);
+            }
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assert ring.isEmpty();
+    }
+}
@@ -9,9 +9,11 @@
  */
 package belldandy;
 
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -43,6 +45,23 @@ public class TestableScheduler extends Scheduler {
         super(limit);
     }
 
+    /**
+     * @param limit
+     * @param tick
+     * @param unit
+     */
+    TestableScheduler(int limit, long tick, TimeUnit unit) {
+        super(limit, tick, unit);
+    }
+
+    /**
+     * @param limit
+     * @param shards
+     */
+    TestableScheduler(int limit, int shards) {
+        super(limit, shards);
+    }
+
     private Runnable wrap(Runnable task) {
         return () -> {
             try {
@@ -83,24 +102,40 @@ public class TestableScheduler extends Scheduler {
      * {@inheritDoc}
      */
     @Override
-    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long delay, long interval, TimeUnit unit) {
-        return super.scheduleAtFixedRate(wrap(command), delay, interval, unit);
+    public void execute(Runnable command) {
+        super.execute(command instanceof Task ? command : wrap(command));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return super.newTaskFor(wrap(callable));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long delay, long interval, long jitter, TimeUnit unit) {
+        return super.scheduleAtFixedRate(wrap(command), delay, interval, jitter, unit);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long delay, long interval, TimeUnit unit) {
-        return super.scheduleWithFixedDelay(wrap(command), delay, interval, unit);
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long delay, long interval, long jitter, TimeUnit unit) {
+        return super.scheduleWithFixedDelay(wrap(command), delay, interval, jitter, unit);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public ScheduledFuture<?> scheduleAt(Runnable command, String format) {
-        return super.scheduleAt(wrap(command), format);
+    public ScheduledFuture<?> scheduleAt(Runnable command, CronExpression cron, ZoneId zone) {
+        return super.scheduleAt(wrap(command), cron, zone);
     }
 
     /**
@@ -163,7 +198,7 @@ public class TestableScheduler extends Scheduler {
         int count = 0; // await at least once
         long start = System.currentTimeMillis();
 
-        while (count++ == 0 || !queue.isEmpty() || !runs.isEmpty()) {
+        while (count++ == 0 || queued() != 0 || !runs.isEmpty()) {
             try {
                 Thread.sleep(3);
             } catch (InterruptedException e) {
@@ -205,6 +240,6 @@ public class TestableScheduler extends Scheduler {
      */
     @Override
     public String toString() {
-        return "Executor [running: " + runs.size() + " executed: " + executed + " queue: " + queue + "]";
+        return "Executor [running: " + runs.size() + " executed: " + executed + " queue: " + queued() + "]";
     }
 }
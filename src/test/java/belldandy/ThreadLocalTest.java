@@ -9,8 +9,15 @@
  */
 package belldandy;
 
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
 
 import org.junit.jupiter.api.Test;
 
@@ -28,4 +35,63 @@ class ThreadLocalTest extends SchedulerTestSupport {
         assert scheduler.start().awaitIdling();
         assert verifySuccessed(future, "ROOT");
     }
+
+    @Test
+    void notInheritInDeferredMode() {
+        scheduler.setDeferThreadCreationPolicy(true);
+        assert scheduler.getDeferThreadCreationPolicy();
+
+        InheritableThreadLocal<String> local = new InheritableThreadLocal();
+        local.set("ROOT");
+
+        Verifier<String> verifier = new Verifier(() -> local.get());
+        Future future = scheduler.submit((Callable) verifier);
+
+        assert scheduler.start().awaitIdling();
+        assert verifySuccessed(future, null);
+    }
+
+    @Test
+    void contextClassLoaderInDeferredMode() {
+        scheduler.setDeferThreadCreationPolicy(true);
+
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        ClassLoader loader = new URLClassLoader(new URL[0], original);
+        Thread.currentThread().setContextClassLoader(loader);
+
+        try {
+            Verifier<ClassLoader> verifier = new Verifier(() -> Thread.currentThread().getContextClassLoader());
+            Future future = scheduler.submit((Callable) verifier);
+
+            assert scheduler.start().awaitIdling();
+            assert verifySuccessed(future, loader);
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+
+    @Test
+    void inheritByEachCronMember() {
+        scheduler.limitAwaitTime(5000);
+
+        InheritableThreadLocal<String> local = new InheritableThreadLocal();
+        Map<String, List<String>> values = new ConcurrentHashMap();
+
+        // the members share the trigger of same expression, but each keeps its own context
+        local.set("A");
+        ScheduledFuture<?> a = scheduler.scheduleAt(() -> values.computeIfAbsent("A", k -> new CopyOnWriteArrayList()).add(local.get()), "* * * * * *");
+        local.set("B");
+        ScheduledFuture<?> b = scheduler.scheduleAt(() -> values.computeIfAbsent("B", k -> new CopyOnWriteArrayList()).add(local.get()), "* * * * * *");
+        local.remove();
+
+        assert scheduler.start().awaitExecutions(4);
+        a.cancel(false);
+        b.cancel(false);
+        assert scheduler.awaitIdling();
+
+        assert 2 <= values.get("A").size();
+        assert 2 <= values.get("B").size();
+        assert values.get("A").stream().allMatch("A"::equals);
+        assert values.get("B").stream().allMatch("B"::equals);
+    }
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("resource")
+class TimingWheelTest extends SchedulerTestSupport {
+
+    @BeforeEach
+    void useTimingWheel() {
+        scheduler.shutdown();
+        scheduler = new TestableScheduler(Integer.MAX_VALUE, 1, TimeUnit.MILLISECONDS);
+    }
+
+    private Task task(long delay) {
+        return new Task(Executors.callable(() -> {
+        }), System.currentTimeMillis() + delay, null);
+    }
+
+    @Test
+    void pollExpiredOnly() {
+        TimingWheel wheel = new TimingWheel(1);
+        long now = System.currentTimeMillis();
+        Task expired = task(-10);
+        Task future = task(1000 * 60);
+        wheel.add(future);
+        wheel.add(expired);
+
+        assert wheel.size() == 2;
+        assert wheel.poll(now) == expired;
+        assert wheel.poll(now) == null;
+        assert wheel.size() == 1;
+    }
+
+    @Test
+    void pollInOrderAcrossLevels() {
+        TimingWheel wheel = new TimingWheel(1);
+        long now = System.currentTimeMillis();
+        Task task1 = task(5000);
+        Task task2 = task(150);
+        Task task3 = task(70);
+        Task task4 = task(5);
+        wheel.add(task1);
+        wheel.add(task2);
+        wheel.add(task3);
+        wheel.add(task4);
+
+        assert wheel.next() <= task4.next;
+        assert wheel.poll(now) == null;
+        assert wheel.poll(task4.next) == task4;
+        assert wheel.poll(task3.next - 1) == null;
+        assert wheel.poll(task3.next) == task3;
+        assert wheel.poll(task2.next - 1) == null;
+        assert wheel.poll(task2.next) == task2;
+        assert wheel.poll(task1.next - 1) == null;
+        assert wheel.poll(task1.next) == task1;
+        assert wheel.size() == 0;
+        assert wheel.next() == Long.MAX_VALUE;
+    }
+
+    @Test
+    void purge() {
+        TimingWheel wheel = new TimingWheel(1);
+        long now = System.currentTimeMillis();
+        Task expired = task(-10);
+        Task live = task(70);
+        Task dead1 = task(70);
+        Task dead2 = task(5000);
+        wheel.add(expired);
+        wheel.add(live);
+        wheel.add(dead1);
+        wheel.add(dead2);
+        assert wheel.poll(now) == expired;
+
+        dead1.cancel(false);
+        dead2.cancel(false);
+        assert wheel.purge() == 2;
+        assert wheel.size() == 1;
+        assert wheel.poll(live.next) == live;
+        assert wheel.poll(Long.MAX_VALUE - 1) == null;
+        assert wheel.next() == Long.MAX_VALUE;
+    }
+
+    @Test
+    void pollFarFuture() {
+        TimingWheel wheel = new TimingWheel(1);
+        Task task = task(1000L * 60 * 60 * 24 * 365 * 3);
+        wheel.add(task);
+
+        assert wheel.poll(task.next - 1) == null;
+        assert wheel.poll(task.next) == task;
+    }
+
+    @Test
+    void removeInConstantTime() {
+        TimingWheel wheel = new TimingWheel(1);
+        Task[] tasks = new Task[1000];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = task(1000L * 60 * 60 * 24 * (i % 100 + 1));
+            wheel.add(tasks[i]);
+        }
+        assert wheel.size() == 1000;
+
+        for (int i = 0; i < tasks.length; i += 2) {
+            assert wheel.remove(tasks[i]);
+            assert wheel.remove(tasks[i]) == false;
+        }
+        assert wheel.size() == 500;
+
+        for (int i = 1; i < tasks.length; i += 2) {
+            assert wheel.remove(tasks[i]);
+        }
+        assert wheel.size() == 0;
+    }
+
+    @Test
+    void cancelReleasesTask() {
+        ScheduledFuture<?> future = scheduler.start().schedule(new Verifier().asRunnable(), 1, TimeUnit.DAYS);
+        assert scheduler.queued() == 1;
+
+        future.cancel(false);
+        assert scheduler.queued() == 0;
+        assert verifyCanceled(future);
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void schedule() {
+        Verifier verifier = new Verifier("OK");
+        ScheduledFuture<String> future = scheduler.schedule((Callable) verifier, 50, TimeUnit.MILLISECONDS);
+        assert verifyRunning(future);
+        assert scheduler.start().awaitIdling();
+        assert verifySuccessed(future, "OK");
+        assert verifier.verifyInitialDelay(50);
+        assert verifier.verifyExecutionCount(1);
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void scheduleMultiDifferentDelay() {
+        Verifier verifier1 = new Verifier();
+        Verifier verifier2 = new Verifier();
+        Verifier verifier3 = new Verifier();
+        ScheduledFuture<String> future1 = scheduler.schedule((Callable) verifier1, 500, TimeUnit.MILLISECONDS);
+        ScheduledFuture<String> future2 = scheduler.schedule((Callable) verifier2, 250, TimeUnit.MILLISECONDS);
+        ScheduledFuture<String> future3 = scheduler.schedule((Callable) verifier3, 10, TimeUnit.MILLISECONDS);
+        assert verifyRunning(future1, future2, future3);
+        assert scheduler.start().awaitIdling();
+        assert verifySuccessed(future1, future2, future3);
+        assert verifyExecutionOrder(verifier3, verifier2, verifier1);
+    }
+
+    @RepeatedTest(MULTIPLICITY)
+    void fixedRate() {
+        Verifier verifier = new Verifier();
+        ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(verifier, 0, 50, TimeUnit.MILLISECONDS);
+
+        assert verifyRunning(future);
+        assert scheduler.start().awaitExecutions(3);
+        assert verifier.verifyExecutionCount(3);
+        assert verifier.verifyRate(0, 30, 30);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2024 Nameless Production Committee
+ *
+ * Licensed under the MIT License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://opensource.org/licenses/mit-license.php
+ */
+package belldandy;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ZoneTableTest {
+
+    private static final String[] ZONES = {"UTC", "+09:00", "Europe/Berlin", "America/New_York", "Australia/Lord_Howe", "Pacific/Apia",
+            "Asia/Tokyo"};
+
+    @Test
+    void cached() {
+        assert ZoneTable.of(ZoneId.of("Europe/Berlin")) == ZoneTable.of(ZoneId.of("Europe/Berlin"));
+    }
+
+    @Test
+    void offset() {
+        Random random = new Random(1);
+        for (String id : ZONES) {
+            ZoneRules rules = ZoneId.of(id).getRules();
+            ZoneTable table = ZoneTable.of(ZoneId.of(id));
+
+            for (int i = 0; i < 10000; i++) {
+                long time = random.nextLong(-4000000000L, 10000000000L);
+                assert table.offset(time) == rules.getOffset(Instant.ofEpochSecond(time)).getTotalSeconds() : id + " " + time;
+            }
+        }
+    }
+
+    @Test
+    void resolve() {
+        Random random = new Random(2);
+        for (String id : ZONES) {
+            ZoneRules rules = ZoneId.of(id).getRules();
+            ZoneTable table = ZoneTable.of(ZoneId.of(id));
+
+            for (int i = 0; i < 10000; i++) {
+                long local = random.nextLong(-4000000000L, 10000000000L);
+                // move near the transition
+                if (i % 2 == 0) {
+                    ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochSecond(local));
+                    if (transition != null) local = transition.toEpochSecond() + random.nextInt(-7200, 7200);
+                }
+
+                LocalDateTime time = LocalDateTime.ofEpochSecond(local, 0, ZoneOffset.UTC);
+                ZoneOffsetTransition transition = rules.getTransition(time);
+                long expected = transition == null ? local - rules.getOffset(time).getTotalSeconds()
+                        : transition.isGap() ? transition.toEpochSecond() : local - transition.getOffsetBefore().getTotalSeconds();
+                assert table.resolve(local) == expected : id + " " + time;
+            }
+        }
+    }
+
+    @Test
+    void gap() {
+        // 2024-03-31T02:00 - 03:00 is skipped in Berlin
+        ZoneTable table = ZoneTable.of(ZoneId.of("Europe/Berlin"));
+        long end = Instant.parse("2024-03-31T01:00:00Z").getEpochSecond();
+        assert table.resolve(LocalDateTime.of(2024, 3, 31, 2, 0).toEpochSecond(ZoneOffset.UTC)) == end;
+        assert table.resolve(LocalDateTime.of(2024, 3, 31, 2, 59, 59).toEpochSecond(ZoneOffset.UTC)) == end;
+        assert table.resolve(LocalDateTime.of(2024, 3, 31, 3, 0).toEpochSecond(ZoneOffset.UTC)) == end;
+    }
+
+    @Test
+    void overlap() {
+        // 2024-10-27T02:00 - 03:00 is repeated in Berlin
+        ZoneTable table = ZoneTable.of(ZoneId.of("Europe/Berlin"));
+        long local = LocalDateTime.of(2024, 10, 27, 2, 30).toEpochSecond(ZoneOffset.UTC);
+        assert table.resolve(local) == Instant.parse("2024-10-27T00:30:00Z").getEpochSecond();
+
+        // the first occurrence is later than the second one in the local time
+        long second = Instant.parse("2024-10-27T01:10:00Z").getEpochSecond();
+        assert table.floorLocal(second) == LocalDateTime.of(2024, 10, 27, 2, 59, 59).toEpochSecond(ZoneOffset.UTC);
+        long later = Instant.parse("2024-10-27T02:10:00Z").getEpochSecond();
+        assert table.floorLocal(later) == LocalDateTime.of(2024, 10, 27, 3, 10).toEpochSecond(ZoneOffset.UTC);
+    }
+}